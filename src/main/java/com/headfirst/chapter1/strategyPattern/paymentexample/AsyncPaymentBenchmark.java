@@ -0,0 +1,47 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.SimulatedGatewayPayment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures AsyncPaymentEngine throughput against the in-flight limit, with a
+ * simulated gateway of fixed round-trip latency. Throughput should grow with the
+ * limit (about limit / latency) until threads or the CPU run out.
+ *
+ * Usage: AsyncPaymentBenchmark [latencyMillis] [maxInFlight]
+ */
+public class AsyncPaymentBenchmark {
+    public static void main(String[] args) {
+        long latencyMillis = args.length > 0 ? Long.parseLong(args[0]) : 100;
+        int maxLimit = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        System.out.printf("Simulated gateway: %d ms per payment, %d cores%n", latencyMillis,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %10s %14s %10s%n", "in flight", "payments", "payments/s", "timed out");
+        for (int limit = 1; limit <= maxLimit; limit *= 10) {
+            SimulatedGatewayPayment gateway = new SimulatedGatewayPayment(latencyMillis);
+            // Enough payments for about 20 round trips at this limit
+            int count = limit * 20;
+            try (AsyncPaymentEngine engine = new AsyncPaymentEngine(limit, count, latencyMillis * 100)) {
+                List<CompletableFuture<PaymentResult>> futures = new ArrayList<>(count);
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    futures.add(engine.submit(new PaymentRequest("bench-" + i, 10, gateway)));
+                }
+                long timedOut = 0;
+                for (CompletableFuture<PaymentResult> future : futures) {
+                    try {
+                        future.join();
+                    } catch (RuntimeException e) {
+                        timedOut++;
+                    }
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-10d %10d %14.0f %10d%n", limit, count, count / seconds, timedOut);
+            }
+        }
+    }
+}
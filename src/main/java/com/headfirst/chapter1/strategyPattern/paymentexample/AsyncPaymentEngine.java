@@ -0,0 +1,269 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentStrategy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking PaymentStrategy calls asynchronously, one thread per in-flight
+ * payment, so gateway round trips overlap instead of queueing behind each other.
+ *
+ * Each gateway (strategy class) has its own limit on payments in flight; requests
+ * over the limit wait in a bounded per-gateway queue without holding a thread.
+ * Every payment has a deadline. The returned future completes with a
+ * {@link PaymentResult} when the gateway answers (paid or declined), or
+ * exceptionally with a TimeoutException when the deadline passes first. A timed
+ * out payment's outcome is unknown: it may still have been charged.
+ *
+ * The default executor creates a platform thread per running payment. On a JDK
+ * with virtual threads, pass {@code Executors.newVirtualThreadPerTaskExecutor()}.
+ */
+public class AsyncPaymentEngine implements AutoCloseable {
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private final int defaultMaxInFlight;
+    private final int maxQueuedPerGateway;
+    private final long defaultTimeoutMillis;
+    private final Map<Class<?>, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultMaxInFlight   payments in flight per gateway, unless set with {@link #setMaxInFlight}
+     * @param maxQueuedPerGateway  payments waiting per gateway before submissions are rejected
+     * @param defaultTimeoutMillis deadline of payments submitted without one
+     */
+    public AsyncPaymentEngine(int defaultMaxInFlight, int maxQueuedPerGateway, long defaultTimeoutMillis) {
+        this(null, defaultMaxInFlight, maxQueuedPerGateway, defaultTimeoutMillis);
+    }
+
+    /**
+     * @param executor runs the blocking payments; should start a thread per task, null for the default
+     */
+    public AsyncPaymentEngine(Executor executor, int defaultMaxInFlight, int maxQueuedPerGateway,
+                              long defaultTimeoutMillis) {
+        if (defaultMaxInFlight <= 0 || maxQueuedPerGateway < 0 || defaultTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Limits and timeout must be positive");
+        }
+        this.ownedExecutor = executor == null ? Executors.newCachedThreadPool(daemon("payment-async")) : null;
+        this.executor = executor == null ? ownedExecutor : executor;
+        this.deadlines = new ScheduledThreadPoolExecutor(1, daemon("payment-deadlines"));
+        this.deadlines.setRemoveOnCancelPolicy(true); // Don't keep the deadlines of finished payments
+        this.defaultMaxInFlight = defaultMaxInFlight;
+        this.maxQueuedPerGateway = maxQueuedPerGateway;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    /**
+     * Sets a gateway's own limit; must be called before its first payment is submitted.
+     */
+    public void setMaxInFlight(Class<? extends PaymentStrategy> gateway, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + maxInFlight);
+        }
+        if (lanes.putIfAbsent(gateway, new Lane(maxInFlight)) != null) {
+            throw new IllegalStateException("Gateway already in use: " + gateway.getSimpleName());
+        }
+    }
+
+    public CompletableFuture<PaymentResult> submit(PaymentRequest request) {
+        return submit(request, defaultTimeoutMillis);
+    }
+
+    /**
+     * @param timeoutMillis time from now until the payment's deadline, including any wait for a free slot
+     */
+    public CompletableFuture<PaymentResult> submit(PaymentRequest request, long timeoutMillis) {
+        Lane lane = lanes.computeIfAbsent(request.getPaymentStrategy().getClass(), c -> new Lane(defaultMaxInFlight));
+        Task task = new Task(request, lane);
+        task.deadline = deadlines.schedule(task::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        lane.submit(task);
+        return task.future;
+    }
+
+    /**
+     * @return payments of the gateway currently running
+     */
+    public int getInFlight(Class<? extends PaymentStrategy> gateway) {
+        Lane lane = lanes.get(gateway);
+        return lane == null ? 0 : lane.inFlight();
+    }
+
+    /**
+     * Stops the deadline timer and the default executor; running payments are not interrupted.
+     */
+    @Override
+    public void close() {
+        deadlines.shutdown();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Admission for one gateway: at most maxInFlight tasks run, the rest queue.
+     */
+    private final class Lane {
+        private final int maxInFlight;
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private int running;
+
+        Lane(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        void submit(Task task) {
+            synchronized (this) {
+                if (running >= maxInFlight) {
+                    if (queue.size() >= maxQueuedPerGateway) {
+                        task.fail(new RejectedExecutionException("Too many payments queued for "
+                                + task.request.getPaymentStrategy().getClass().getSimpleName()));
+                        return;
+                    }
+                    queue.addLast(task);
+                    return;
+                }
+                running++;
+            }
+            start(task);
+        }
+
+        /**
+         * Called when a task's payment returned: hands its slot to the next live queued task.
+         */
+        void finished() {
+            Task next;
+            synchronized (this) {
+                do {
+                    next = queue.pollFirst();
+                } while (next != null && next.state.get() != QUEUED);
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            start(next);
+        }
+
+        synchronized int inFlight() {
+            return running;
+        }
+
+        /**
+         * If the executor rejects the task it has been shut down, so the task and
+         * everything queued behind it are failed in one pass rather than one by one.
+         */
+        private void start(Task task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                List<Task> rejected;
+                synchronized (this) {
+                    rejected = new ArrayList<>(queue);
+                    queue.clear();
+                    running--;
+                }
+                task.fail(e);
+                for (Task queued : rejected) {
+                    queued.fail(e);
+                }
+            }
+        }
+    }
+
+    private final class Task implements Runnable {
+        final PaymentRequest request;
+        final Lane lane;
+        final CompletableFuture<PaymentResult> future = new CompletableFuture<>();
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        volatile ScheduledFuture<?> deadline;
+        private Thread runner; // Guarded by this, so expire() cannot interrupt the thread's next task
+
+        Task(PaymentRequest request, Lane lane) {
+            this.request = request;
+            this.lane = lane;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return; // Expired while waiting for the executor
+                }
+                synchronized (this) {
+                    runner = Thread.currentThread();
+                }
+                PaymentResult result;
+                try {
+                    request.pay();
+                    result = PaymentResult.succeeded(request);
+                } catch (RuntimeException e) {
+                    result = PaymentResult.failed(request, e);
+                } finally {
+                    synchronized (this) {
+                        runner = null;
+                    }
+                    Thread.interrupted(); // Clear an interrupt from expire() that arrived too late
+                }
+                if (state.compareAndSet(RUNNING, DONE)) {
+                    deadline.cancel(false);
+                    future.complete(result);
+                }
+            } finally {
+                lane.finished();
+            }
+        }
+
+        void expire() {
+            int previous = state.getAndSet(DONE);
+            if (previous == DONE) {
+                return;
+            }
+            future.completeExceptionally(new TimeoutException("Payment " + request.getRequestId()
+                    + (previous == QUEUED ? " was not started" : " did not complete") + " before its deadline"));
+            if (previous == QUEUED) {
+                synchronized (lane) {
+                    lane.queue.remove(this);
+                }
+            }
+            synchronized (this) {
+                if (runner != null) {
+                    runner.interrupt(); // Best effort: blocking gateway calls may ignore it
+                }
+            }
+        }
+
+        void fail(Exception e) {
+            if (state.getAndSet(DONE) != DONE) {
+                deadline.cancel(false);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentDeclinedException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of each payment by request ID, so a retried request is
+ * answered from the cache instead of being charged again.
+ *
+ * Concurrent duplicates are single-flight: the first caller pays, the others
+ * wait for its result. Paid and declined results are kept for the TTL; other
+ * failures (gateway errors) are handed to the waiting duplicates and then
+ * forgotten, so a later retry can pay.
+ *
+ * The map is split into independently locked stripes by hash of the request ID,
+ * so there is no global lock. Each stripe keeps its entries in insertion order,
+ * which with a fixed TTL is also expiry order: expired entries are dropped from
+ * the head as new ones arrive, and the oldest completed entries are evicted
+ * beyond {@code maxEntries / stripes} per stripe, which bounds memory.
+ */
+public class IdempotencyCache {
+    private final Stripe[] stripes;
+    private final int maxEntriesPerStripe;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IdempotencyCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+    }
+
+    /**
+     * @param stripeCount number of independently locked stripes, rounded up to a power of two
+     */
+    public IdempotencyCache(int maxEntries, long ttlMillis, int stripeCount) {
+        if (maxEntries <= 0 || ttlMillis <= 0 || stripeCount <= 0) {
+            throw new IllegalArgumentException("Size, TTL and stripe count must be positive");
+        }
+        int count = 1;
+        while (count < stripeCount) {
+            count <<= 1;
+        }
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.maxEntriesPerStripe = Math.max(1, maxEntries / count);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Returns the remembered result for the request ID, waits for it if the same
+     * request is being paid right now, or else runs the payment and remembers its result.
+     */
+    public PaymentResult execute(String requestId, Supplier<PaymentResult> payment) {
+        Stripe stripe = stripeFor(requestId);
+        CompletableFuture<PaymentResult> existing;
+        CompletableFuture<PaymentResult> created = new CompletableFuture<>();
+        long now = System.nanoTime();
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(requestId);
+            if (entry != null && (!entry.result.isDone() || now - entry.createdNanos < ttlNanos)) {
+                existing = entry.result;
+            } else {
+                existing = null;
+                if (entry != null) {
+                    stripe.entries.remove(requestId); // Re-insert at the tail, in expiry order
+                }
+                stripe.entries.put(requestId, new Entry(created, now));
+                evict(stripe, now);
+            }
+        }
+
+        if (existing != null) {
+            (existing.isDone() ? hits : joins).increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw (RuntimeException) e.getCause();
+            }
+        }
+
+        misses.increment();
+        try {
+            PaymentResult result = payment.get();
+            if (!result.isSuccess() && !(result.getError() instanceof PaymentDeclinedException)) {
+                forget(stripe, requestId, created);
+            }
+            created.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Errors too, or the entry would stay in flight and every retry would wait on it forever
+            forget(stripe, requestId, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of requests answered from a remembered result
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of duplicates that waited for an in-flight payment
+     */
+    public long getJoinCount() {
+        return joins.sum();
+    }
+
+    /**
+     * @return the number of requests that were actually paid
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of completed entries dropped to stay within the size bound
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Stripe stripeFor(String requestId) {
+        int hash = requestId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Drops expired entries from the head, then the oldest completed entries while
+     * the stripe is over its bound. In-flight entries are never dropped but are
+     * skipped rather than stopping the scan, so a hung payment only holds its own
+     * entry and the stripe stays within its bound plus the payments in flight.
+     */
+    private void evict(Stripe stripe, long now) {
+        Iterator<Entry> iterator = stripe.entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry oldest = iterator.next();
+            boolean expired = now - oldest.createdNanos >= ttlNanos;
+            boolean overBound = stripe.entries.size() > maxEntriesPerStripe;
+            if (!expired && !overBound) {
+                return;
+            }
+            if (!oldest.result.isDone()) {
+                continue;
+            }
+            iterator.remove();
+            if (!expired) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static void forget(Stripe stripe, String requestId, CompletableFuture<PaymentResult> result) {
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(requestId);
+            if (entry != null && entry.result == result) {
+                stripe.entries.remove(requestId);
+            }
+        }
+    }
+
+    private static final class Stripe {
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+    }
+
+    private static final class Entry {
+        final CompletableFuture<PaymentResult> result;
+        final long createdNanos;
+
+        Entry(CompletableFuture<PaymentResult> result, long createdNanos) {
+            this.result = result;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentStrategy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures IdempotencyCache checks per second for increasing thread counts, with
+ * a single stripe (one global lock) and with the default striping. Request IDs
+ * are drawn from a key space twice the cache size, so there is a mix of hits,
+ * misses and evictions.
+ *
+ * Usage: IdempotencyCacheBenchmark [millisPerRun] [maxEntries]
+ */
+public class IdempotencyCacheBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int maxEntries = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        String[] keys = new String[maxEntries * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "req-" + i;
+        }
+        PaymentStrategy noop = amount -> { };
+
+        run(new IdempotencyCache(maxEntries, 60_000, 1), keys, noop, 2, millis); // Warm up
+        run(new IdempotencyCache(maxEntries, 60_000), keys, noop, 2, millis);
+
+        System.out.printf("%d cores, cache of %d entries%n", Runtime.getRuntime().availableProcessors(), maxEntries);
+        System.out.printf("%-8s %18s %18s%n", "threads", "1 stripe checks/s", "striped checks/s");
+        for (int threads = 1; threads <= 16; threads *= 2) {
+            double global = run(new IdempotencyCache(maxEntries, 60_000, 1), keys, noop, threads, millis);
+            double striped = run(new IdempotencyCache(maxEntries, 60_000), keys, noop, threads, millis);
+            System.out.printf("%-8d %18.0f %18.0f%n", threads, global, striped);
+        }
+    }
+
+    private static double run(IdempotencyCache cache, String[] keys, PaymentStrategy strategy, int threads, long millis)
+            throws InterruptedException {
+        LongAdder checks = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + millis * 1_000_000;
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long local = 0;
+                while ((local & 1023) != 0 || System.nanoTime() < end) {
+                    PaymentRequest request = new PaymentRequest(keys[random.nextInt(keys.length)], 10, strategy);
+                    cache.execute(request.getRequestId(), () -> PaymentResult.succeeded(request));
+                    local++;
+                }
+                checks.add(local);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        return checks.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,80 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes a settlement-sized batch through processBatch() with two stub gateways
+ * of different latency, for increasing per-strategy concurrency limits.
+ *
+ * Usage: PaymentBatchBenchmark [requests] [gatewayMicros]
+ */
+public class PaymentBatchBenchmark {
+    public static void main(String[] args) {
+        int requestCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long gatewayMicros = args.length > 1 ? Long.parseLong(args[1]) : 200;
+
+        // Card payments take twice as long as wallet payments; every 1000th card payment is declined
+        PaymentStrategy card = new CardGateway(gatewayMicros * 2, 1000);
+        PaymentStrategy wallet = new WalletGateway(gatewayMicros);
+        List<PaymentRequest> requests = new ArrayList<>(requestCount);
+        for (int i = 0; i < requestCount; i++) {
+            requests.add(new PaymentRequest("settle-" + i, 10 + i % 90, i % 2 == 0 ? card : wallet));
+        }
+
+        System.out.printf("%d requests, stub gateways of %d/%d us%n", requestCount, gatewayMicros * 2, gatewayMicros);
+        System.out.printf("%-16s %14s %10s%n", "per strategy", "payments/s", "failed");
+        for (int concurrency = 1; concurrency <= 64; concurrency *= 4) {
+            ExecutorService executor = Executors.newCachedThreadPool();
+            PaymentProcessor processor = new PaymentProcessor(executor, concurrency);
+            long start = System.nanoTime();
+            List<PaymentResult> results = processor.processBatch(requests);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+            long failed = results.stream().filter(result -> !result.isSuccess()).count();
+            System.out.printf("%-16d %14.0f %10d%n", concurrency, requestCount / seconds, failed);
+        }
+    }
+
+    /**
+     * Stands in for a remote gateway: waits a fixed time per payment instead of printing.
+     */
+    private abstract static class StubGateway implements PaymentStrategy {
+        private final long latencyNanos;
+        private final int declineEvery;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        StubGateway(long latencyMicros, int declineEvery) {
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+            this.declineEvery = declineEvery;
+        }
+
+        @Override
+        public void pay(double amount) {
+            LockSupport.parkNanos(latencyNanos);
+            if (declineEvery > 0 && calls.incrementAndGet() % declineEvery == 0) {
+                throw new IllegalStateException("Payment declined");
+            }
+        }
+    }
+
+    // Separate classes, so processBatch() puts them in separate concurrency groups
+    private static final class CardGateway extends StubGateway {
+        CardGateway(long latencyMicros, int declineEvery) {
+            super(latencyMicros, declineEvery);
+        }
+    }
+
+    private static final class WalletGateway extends StubGateway {
+        WalletGateway(long latencyMicros) {
+            super(latencyMicros, 0);
+        }
+    }
+}
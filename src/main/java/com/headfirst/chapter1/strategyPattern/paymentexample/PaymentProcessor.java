@@ -3,17 +3,181 @@ package com.headfirst.chapter1.strategyPattern.paymentexample;
 
 import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentStrategy;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Context that delegates payments to a PaymentStrategy.
+ *
+ * Single payments use the strategy set with setPaymentStrategy(). Batches carry
+ * a strategy per request: {@link #processBatch(List)} groups the requests by
+ * strategy class (one group per payment method) and runs each group on at most
+ * {@code maxConcurrencyPerStrategy} threads at once, so one slow gateway cannot
+ * take every thread. A PaymentProcessor can be shared between threads.
+ *
+ * With an {@link IdempotencyCache}, requests are deduplicated by request ID:
+ * a retried request gets the first attempt's result instead of paying again.
+ */
 public class PaymentProcessor {
-    private PaymentStrategy paymentStrategy;
+    static final int DEFAULT_MAX_CONCURRENCY_PER_STRATEGY = 8;
+    // Shared by all processors that don't bring their own; daemon threads so the JVM can exit
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "payment-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor executor;
+    private final int maxConcurrencyPerStrategy;
+    private final IdempotencyCache idempotencyCache;
+    private volatile PaymentStrategy paymentStrategy;
+
+    public PaymentProcessor() {
+        this(DEFAULT_EXECUTOR, DEFAULT_MAX_CONCURRENCY_PER_STRATEGY);
+    }
+
+    /**
+     * @param executor                  runs the batch workers
+     * @param maxConcurrencyPerStrategy maximum number of payments in flight per strategy class
+     */
+    public PaymentProcessor(Executor executor, int maxConcurrencyPerStrategy) {
+        this(executor, maxConcurrencyPerStrategy, null);
+    }
+
+    /**
+     * @param idempotencyCache deduplicates requests by ID, null to pay every request
+     */
+    public PaymentProcessor(Executor executor, int maxConcurrencyPerStrategy, IdempotencyCache idempotencyCache) {
+        if (maxConcurrencyPerStrategy <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrencyPerStrategy);
+        }
+        this.executor = executor;
+        this.maxConcurrencyPerStrategy = maxConcurrencyPerStrategy;
+        this.idempotencyCache = idempotencyCache;
+    }
 
     public void setPaymentStrategy(PaymentStrategy paymentStrategy) {
         this.paymentStrategy = paymentStrategy;
     }
 
     public void processPayment(double amount) {
-        if (paymentStrategy == null) {
+        PaymentStrategy strategy = paymentStrategy;
+        if (strategy == null) {
             throw new IllegalStateException("Payment strategy is not set!");
         }
-        paymentStrategy.pay(amount);
+        strategy.pay(amount);
+    }
+
+    /**
+     * Pays a single request with its own strategy, unless the cache already has
+     * (or is producing) a result for its request ID.
+     */
+    public PaymentResult processPayment(PaymentRequest request) {
+        if (idempotencyCache == null) {
+            return pay(request);
+        }
+        return idempotencyCache.execute(request.getRequestId(), () -> pay(request));
+    }
+
+    /**
+     * Pays every request with its own strategy and waits for all of them. A failing
+     * payment does not stop the others. An Error from a strategy is not a payment
+     * result: the rest of the batch still runs, then the first Error is rethrown.
+     *
+     * @return one result per request, in the order of the requests
+     */
+    public List<PaymentResult> processBatch(List<PaymentRequest> requests) {
+        PaymentRequest[] batch = requests.toArray(new PaymentRequest[0]);
+        PaymentResult[] results = new PaymentResult[batch.length];
+        List<int[]> groups = groupByStrategy(batch);
+
+        int workerCount = 0;
+        for (int[] group : groups) {
+            workerCount += Math.min(group.length, maxConcurrencyPerStrategy);
+        }
+        CountDownLatch done = new CountDownLatch(workerCount);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int[] group : groups) {
+            AtomicInteger cursor = new AtomicInteger();
+            for (int w = Math.min(group.length, maxConcurrencyPerStrategy); w > 0; w--) {
+                executor.execute(() -> {
+                    try {
+                        for (int i = cursor.getAndIncrement(); i < group.length; i = cursor.getAndIncrement()) {
+                            int index = group[i];
+                            try {
+                                results[index] = processPayment(batch[index]);
+                            } catch (RuntimeException e) {
+                                results[index] = PaymentResult.failed(batch[index], e);
+                            } catch (Throwable e) {
+                                // Caught per request, so the worker keeps going and the caller sees it below
+                                error.compareAndSet(null, e);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the batch", e);
+        }
+        Throwable failure = error.get();
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException("Failed to process the batch", failure);
+        }
+        // The latch makes the workers' writes to results visible here
+        return Arrays.asList(results);
+    }
+
+    private static PaymentResult pay(PaymentRequest request) {
+        try {
+            request.pay();
+            return PaymentResult.succeeded(request);
+        } catch (RuntimeException e) {
+            return PaymentResult.failed(request, e);
+        }
+    }
+
+    /**
+     * @return for each strategy class, the indexes of its requests in batch order
+     */
+    private static List<int[]> groupByStrategy(PaymentRequest[] batch) {
+        Map<Class<?>, Group> groups = new HashMap<>();
+        for (int i = 0; i < batch.length; i++) {
+            groups.computeIfAbsent(batch[i].getPaymentStrategy().getClass(), c -> new Group()).add(i);
+        }
+        List<int[]> indexes = new ArrayList<>(groups.size());
+        for (Group group : groups.values()) {
+            indexes.add(Arrays.copyOf(group.indexes, group.size));
+        }
+        return indexes;
+    }
+
+    private static final class Group {
+        int[] indexes = new int[16];
+        int size;
+
+        void add(int index) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+            }
+            indexes[size++] = index;
+        }
     }
 }
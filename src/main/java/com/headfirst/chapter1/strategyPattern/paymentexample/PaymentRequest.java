@@ -0,0 +1,51 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.IdempotentPaymentStrategy;
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentStrategy;
+
+import java.util.Objects;
+
+/**
+ * One payment to execute: an amount and the strategy to pay it with, identified
+ * by a caller-chosen request ID.
+ */
+public final class PaymentRequest {
+    private final String requestId;
+    private final double amount;
+    private final PaymentStrategy paymentStrategy;
+
+    public PaymentRequest(String requestId, double amount, PaymentStrategy paymentStrategy) {
+        this.requestId = Objects.requireNonNull(requestId, "requestId");
+        this.amount = amount;
+        this.paymentStrategy = Objects.requireNonNull(paymentStrategy, "paymentStrategy");
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public PaymentStrategy getPaymentStrategy() {
+        return paymentStrategy;
+    }
+
+    /**
+     * Pays with the request's strategy. Idempotent strategies get the request ID
+     * as idempotency key, so paying the same request twice charges once.
+     */
+    void pay() {
+        if (paymentStrategy instanceof IdempotentPaymentStrategy) {
+            ((IdempotentPaymentStrategy) paymentStrategy).pay(amount, requestId);
+        } else {
+            paymentStrategy.pay(amount);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentRequest{" + requestId + ", $" + amount + ", " + paymentStrategy.getClass().getSimpleName() + "}";
+    }
+}
@@ -0,0 +1,43 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+/**
+ * Outcome of one request in a batch: either it was paid, or the exception the
+ * strategy failed with.
+ */
+public final class PaymentResult {
+    private final PaymentRequest request;
+    private final RuntimeException error;
+
+    private PaymentResult(PaymentRequest request, RuntimeException error) {
+        this.request = request;
+        this.error = error;
+    }
+
+    static PaymentResult succeeded(PaymentRequest request) {
+        return new PaymentResult(request, null);
+    }
+
+    static PaymentResult failed(PaymentRequest request, RuntimeException error) {
+        return new PaymentResult(request, error);
+    }
+
+    public PaymentRequest getRequest() {
+        return request;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the exception the payment failed with, or null if it succeeded
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return request.getRequestId() + (error == null ? ": paid" : ": failed (" + error.getMessage() + ")");
+    }
+}
@@ -3,6 +3,8 @@ package com.headfirst.chapter1.strategyPattern.paymentexample;
 import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.CreditCardPayment;
 import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PayPalPayment;
 
+import java.util.List;
+
 public class PaymentSimulator {
     public static void main(String[] args) {
         PaymentProcessor processor = new PaymentProcessor();
@@ -14,5 +16,14 @@ public class PaymentSimulator {
         // Switch to PayPal Payment
         processor.setPaymentStrategy(new PayPalPayment("user@example.com"));
         processor.processPayment(200.00);
+
+        // Pay a batch, each request with its own strategy
+        List<PaymentResult> results = processor.processBatch(List.of(
+                new PaymentRequest("order-1", 25.00, new CreditCardPayment("1234-5678-9876-5432")),
+                new PaymentRequest("order-2", 40.00, new PayPalPayment("user@example.com")),
+                new PaymentRequest("order-3", 15.00, amount -> {
+                    throw new IllegalStateException("Gift card has no balance");
+                })));
+        results.forEach(System.out::println);
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.resilience.CircuitBreaker;
+import com.headfirst.chapter1.strategyPattern.paymentexample.resilience.ResilientPaymentStrategy;
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.FaultInjectingGateway;
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.IdempotentPaymentStrategy;
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentStrategy;
+import com.headfirst.chapter7.adapterPattern.payment.PaymentGatewayAdapter;
+import com.headfirst.chapter7.adapterPattern.payment.ThirdPartyPaymentGateway;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs payments against a fault-injecting primary gateway, first with a slow
+ * tail, then during an outage, with and without ResilientPaymentStrategy, and
+ * checks that hedging never charged a payment twice.
+ */
+public class ResilientPaymentSimulator {
+    public static void main(String[] args) {
+        FaultInjectingGateway primary = new FaultInjectingGateway("primary", 5);
+        primary.setSlowResponses(0.05, 200); // 5% of calls take 40x longer
+
+        // The third-party gateway from chapter 7, adapted, is the secondary
+        PaymentGatewayAdapter adapter = new PaymentGatewayAdapter(new ThirdPartyPaymentGateway());
+        PaymentStrategy secondary = adapter::pay;
+        CircuitBreaker breaker = new CircuitBreaker(10, 5, 0.5, 1000);
+        ResilientPaymentStrategy resilient = new ResilientPaymentStrategy(primary, secondary, breaker, 90, 10, 2000);
+
+        System.out.println("Slow tail, 400 payments each:");
+        System.out.println("  primary only: " + latencies(primary, "direct", 400));
+        System.out.println("  resilient:    " + latencies(resilient, "hedged", 400));
+        System.out.printf("  hedges sent %d, won %d; charges %d, duplicates suppressed %d%n",
+                resilient.getHedgeCount(), resilient.getHedgeWinCount(), primary.getChargeCount(),
+                primary.getDuplicateCount());
+
+        System.out.println("Primary outage:");
+        primary.setDown(true);
+        List<PaymentResult> results = new PaymentProcessor().processBatch(requests(resilient, "outage", 6));
+        results.forEach(result -> System.out.println("  " + result));
+        System.out.println("  breaker " + breaker.getState() + ", failovers " + resilient.getFailoverCount());
+    }
+
+    /**
+     * Pays on 16 threads and reports the latency percentiles of the payments.
+     */
+    private static String latencies(IdempotentPaymentStrategy strategy, String prefix, int count) {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Long>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = prefix + "-" + i;
+            futures.add(executor.submit(() -> {
+                long start = System.nanoTime();
+                strategy.pay(10, key);
+                return System.nanoTime() - start;
+            }));
+        }
+        long[] nanos = new long[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                nanos[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to run payments", e);
+        } finally {
+            executor.shutdown();
+        }
+        Arrays.sort(nanos);
+        return String.format("p50 %.1f ms, p99 %.1f ms, max %.1f ms", nanos[count / 2] / 1e6,
+                nanos[(int) Math.ceil(count * 0.99) - 1] / 1e6, nanos[count - 1] / 1e6);
+    }
+
+    private static List<PaymentRequest> requests(PaymentStrategy strategy, String prefix, int count) {
+        List<PaymentRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(new PaymentRequest(prefix + "-" + i, 10 + i, strategy));
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,111 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker. It tracks the outcomes of the last
+ * {@code windowSize} calls and opens when at least {@code minimumCalls} of them
+ * were recorded and the failure rate reaches the threshold. While open every
+ * call is refused; after {@code openMillis} one probe call is let through
+ * (half-open), and its outcome closes the breaker or opens it again.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] failures;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failureCount;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis) {
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid window: " + windowSize + "/" + minimumCalls);
+        }
+        this.failures = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * @return whether a call may go ahead; callers that get true must record its outcome
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset();
+            state = State.CLOSED;
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && (double) failureCount / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == failures.length) {
+            if (failures[next]) {
+                failureCount--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[next] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        next = (next + 1) % failures.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        reset();
+    }
+
+    private void reset() {
+        next = 0;
+        recorded = 0;
+        failureCount = 0;
+        probeInFlight = false;
+    }
+}
@@ -0,0 +1,42 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Percentile of the most recent call latencies, recomputed every few samples
+ * so reading it is cheap.
+ */
+class LatencyTracker {
+    private static final int WINDOW = 256;
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final double percentile;
+    private final long floorNanos;
+    private final long[] samples = new long[WINDOW];
+    private long count;
+    private long threshold;
+
+    /**
+     * @param floorNanos the threshold never drops below this, and is used until enough samples exist
+     */
+    LatencyTracker(double percentile, long floorNanos) {
+        this.percentile = percentile;
+        this.floorNanos = floorNanos;
+        this.threshold = floorNanos;
+    }
+
+    synchronized void record(long nanos) {
+        samples[(int) (count % WINDOW)] = nanos;
+        count++;
+        if (count % RECOMPUTE_EVERY == 0) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            threshold = Math.max(floorNanos, sorted[Math.max(0, index)]);
+        }
+    }
+
+    synchronized long threshold() {
+        return threshold;
+    }
+}
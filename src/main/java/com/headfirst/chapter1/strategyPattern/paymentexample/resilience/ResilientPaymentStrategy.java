@@ -0,0 +1,199 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample.resilience;
+
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.IdempotentPaymentStrategy;
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentDeclinedException;
+import com.headfirst.chapter1.strategyPattern.paymentexample.strategy.PaymentStrategy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorates a primary gateway with hedging, a circuit breaker and failover to a
+ * secondary strategy.
+ *
+ * <ul>
+ *   <li>Hedging: if the primary has not answered within its recent latency
+ *   percentile, a second attempt is sent to the primary with the same
+ *   idempotency key, and the first success wins. The gateway deduplicates by
+ *   key, so the payment is charged at most once.</li>
+ *   <li>Circuit breaking: gateway errors (anything but a
+ *   {@link PaymentDeclinedException}) are recorded in the breaker; while it is
+ *   open, payments go straight to the secondary.</li>
+ *   <li>Failover: a payment whose primary attempts all failed with gateway errors
+ *   (taken to mean nothing was charged) is retried on the secondary. A payment whose primary attempts did not answer
+ *   within the attempt timeout is never failed over, because the primary may
+ *   still charge it; it fails with an "outcome unknown" exception instead.</li>
+ * </ul>
+ */
+public class ResilientPaymentStrategy implements IdempotentPaymentStrategy {
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "payment-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final IdempotentPaymentStrategy primary;
+    private final PaymentStrategy secondary;
+    private final CircuitBreaker breaker;
+    private final LatencyTracker latencies;
+    private final long attemptTimeoutNanos;
+    private final Executor executor;
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+
+    /**
+     * @param hedgePercentile     primary latency percentile after which a hedge is sent, e.g. 95
+     * @param minHedgeMillis      never hedge sooner than this
+     * @param attemptTimeoutMillis how long to wait for the primary before giving up with an unknown outcome
+     */
+    public ResilientPaymentStrategy(IdempotentPaymentStrategy primary, PaymentStrategy secondary, CircuitBreaker breaker,
+                                    double hedgePercentile, long minHedgeMillis, long attemptTimeoutMillis) {
+        this(primary, secondary, breaker, hedgePercentile, minHedgeMillis, attemptTimeoutMillis, DEFAULT_EXECUTOR);
+    }
+
+    public ResilientPaymentStrategy(IdempotentPaymentStrategy primary, PaymentStrategy secondary, CircuitBreaker breaker,
+                                    double hedgePercentile, long minHedgeMillis, long attemptTimeoutMillis,
+                                    Executor executor) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.breaker = breaker;
+        this.latencies = new LatencyTracker(hedgePercentile, TimeUnit.MILLISECONDS.toNanos(minHedgeMillis));
+        this.attemptTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(attemptTimeoutMillis);
+        this.executor = executor;
+    }
+
+    @Override
+    public void pay(double amount, String idempotencyKey) {
+        if (!breaker.allowRequest()) {
+            payWithSecondary(amount, idempotencyKey);
+            return;
+        }
+        RuntimeException failure;
+        try {
+            payWithPrimary(amount, idempotencyKey);
+            breaker.recordSuccess();
+            return;
+        } catch (PaymentDeclinedException e) {
+            breaker.recordSuccess(); // The gateway is healthy, it just said no
+            throw e;
+        } catch (OutcomeUnknownException e) {
+            breaker.recordFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.recordFailure();
+            failure = e;
+        }
+        try {
+            payWithSecondary(amount, idempotencyKey);
+        } catch (RuntimeException e) {
+            e.addSuppressed(failure);
+            throw e;
+        }
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * @return the number of hedged attempts sent to the primary
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return the number of payments the hedged attempt completed first
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * @return the number of payments sent to the secondary
+     */
+    public long getFailoverCount() {
+        return failovers.sum();
+    }
+
+    private void payWithSecondary(double amount, String idempotencyKey) {
+        failovers.increment();
+        if (secondary instanceof IdempotentPaymentStrategy) {
+            ((IdempotentPaymentStrategy) secondary).pay(amount, idempotencyKey);
+        } else {
+            secondary.pay(amount);
+        }
+    }
+
+    private void payWithPrimary(double amount, String idempotencyKey) {
+        long start = System.nanoTime();
+        CompletableFuture<Integer> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        attempt(amount, idempotencyKey, 0, pending, winner);
+        try {
+            try {
+                winner.get(Math.min(latencies.threshold(), attemptTimeoutNanos), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                long remaining = attemptTimeoutNanos - (System.nanoTime() - start);
+                // Only hedge before the deadline and while the first attempt is still pending,
+                // so a payment that has already failed over can never be charged by a late hedge
+                if (remaining > 0 && pending.updateAndGet(count -> count == 0 ? 0 : count + 1) > 0) {
+                    hedges.increment();
+                    attempt(amount, idempotencyKey, 1, pending, winner);
+                }
+                if (winner.get(Math.max(0, remaining), TimeUnit.NANOSECONDS) == 1) {
+                    hedgeWins.increment();
+                }
+            }
+        } catch (TimeoutException e) {
+            throw new OutcomeUnknownException("No answer from " + primary + " within the attempt timeout; "
+                    + "the payment may still be charged under key " + idempotencyKey);
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OutcomeUnknownException("Interrupted while waiting for " + primary);
+        }
+    }
+
+    /**
+     * Completes the winner with the attempt number on the first success, or with
+     * the first attempt's exception once every attempt has failed.
+     */
+    private void attempt(double amount, String idempotencyKey, int number, AtomicInteger pending,
+                         CompletableFuture<Integer> winner) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                primary.pay(amount, idempotencyKey);
+            } catch (RuntimeException e) {
+                if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(e);
+                }
+                return;
+            }
+            // Outside the try: the payment is charged, so nothing after it may look like a gateway error
+            winner.complete(number);
+            latencies.record(System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * The primary did not answer in time, so the payment may or may not have been charged.
+     */
+    public static class OutcomeUnknownException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public OutcomeUnknownException(String message) {
+            super(message);
+        }
+    }
+}
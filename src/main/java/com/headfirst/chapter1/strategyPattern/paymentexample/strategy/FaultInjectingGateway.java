@@ -0,0 +1,91 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample.strategy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local gateway stub for testing resilience: injects slow responses, errors and
+ * outages, and deduplicates by idempotency key like a real gateway would. It
+ * counts the charges it made and the duplicate attempts it suppressed, so tests
+ * can assert that nothing was charged twice.
+ */
+public class FaultInjectingGateway implements IdempotentPaymentStrategy {
+    private final String name;
+    private final long latencyMillis;
+    private final Map<String, Boolean> charged = new ConcurrentHashMap<>();
+    private final AtomicLong charges = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private volatile double slowRate;
+    private volatile long slowLatencyMillis;
+    private volatile double errorRate;
+    private volatile boolean down;
+
+    public FaultInjectingGateway(String name, long latencyMillis) {
+        this.name = name;
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Makes a fraction of the calls take {@code slowLatencyMillis} instead of the normal latency.
+     */
+    public void setSlowResponses(double slowRate, long slowLatencyMillis) {
+        this.slowRate = slowRate;
+        this.slowLatencyMillis = slowLatencyMillis;
+    }
+
+    /**
+     * Makes a fraction of the calls fail with a gateway error after the normal latency.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * While down, every call fails at once.
+     */
+    public void setDown(boolean down) {
+        this.down = down;
+    }
+
+    @Override
+    public void pay(double amount, String idempotencyKey) {
+        if (down) {
+            throw new IllegalStateException(name + " is unavailable");
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long millis = random.nextDouble() < slowRate ? slowLatencyMillis : latencyMillis;
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(name + " call interrupted", e);
+        }
+        if (random.nextDouble() < errorRate) {
+            throw new IllegalStateException(name + " returned an internal error");
+        }
+        if (charged.putIfAbsent(idempotencyKey, Boolean.TRUE) == null) {
+            charges.incrementAndGet();
+        } else {
+            duplicates.incrementAndGet();
+        }
+    }
+
+    public long getChargeCount() {
+        return charges.get();
+    }
+
+    /**
+     * Number of calls that repeated an already charged idempotency key and were not charged again.
+     */
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
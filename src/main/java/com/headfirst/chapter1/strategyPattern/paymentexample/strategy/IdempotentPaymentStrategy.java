@@ -0,0 +1,19 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample.strategy;
+
+import java.util.UUID;
+
+/**
+ * A strategy whose gateway deduplicates by idempotency key: paying twice with
+ * the same key charges once, so a payment can safely be retried or hedged.
+ */
+public interface IdempotentPaymentStrategy extends PaymentStrategy {
+    void pay(double amount, String idempotencyKey);
+
+    /**
+     * Pays under a fresh key, so the call is never deduplicated against another.
+     */
+    @Override
+    default void pay(double amount) {
+        pay(amount, UUID.randomUUID().toString());
+    }
+}
@@ -0,0 +1,14 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample.strategy;
+
+/**
+ * The gateway answered and refused the payment (insufficient funds, blocked
+ * card, ...). Unlike other exceptions from a strategy, it is a definite outcome:
+ * retrying elsewhere would not help, and it says nothing about the gateway's health.
+ */
+public class PaymentDeclinedException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public PaymentDeclinedException(String message) {
+        super(message);
+    }
+}
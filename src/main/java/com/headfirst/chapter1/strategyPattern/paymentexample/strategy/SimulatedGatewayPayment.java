@@ -0,0 +1,54 @@
+package com.headfirst.chapter1.strategyPattern.paymentexample.strategy;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for a remote payment gateway: each payment blocks for a
+ * simulated round trip and is declined at a configurable rate.
+ */
+public class SimulatedGatewayPayment implements PaymentStrategy {
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double declineRate;
+    private final AtomicLong payments = new AtomicLong();
+
+    public SimulatedGatewayPayment(long latencyMillis) {
+        this(latencyMillis, 0, 0);
+    }
+
+    /**
+     * @param latencyMillis base round trip of each payment
+     * @param jitterMillis  up to this much is added at random to each round trip
+     * @param declineRate   fraction of payments that are declined, 0 to 1
+     */
+    public SimulatedGatewayPayment(long latencyMillis, long jitterMillis, double declineRate) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.declineRate = declineRate;
+    }
+
+    @Override
+    public void pay(double amount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long millis = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Payment of $" + amount + " interrupted", e);
+        }
+        if (random.nextDouble() < declineRate) {
+            throw new PaymentDeclinedException("Payment of $" + amount + " declined by gateway");
+        }
+        payments.incrementAndGet();
+    }
+
+    /**
+     * @return the number of payments the gateway accepted
+     */
+    public long getPaymentCount() {
+        return payments.get();
+    }
+}
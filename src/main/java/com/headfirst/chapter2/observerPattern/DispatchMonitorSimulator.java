@@ -0,0 +1,81 @@
+package com.headfirst.chapter2.observerPattern;
+
+import com.headfirst.chapter2.observerPattern.metrics.DispatchMonitor;
+import com.headfirst.chapter2.observerPattern.notification.observers.ConflatingObserver;
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.Observer;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.OverflowPolicy;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attaches a DispatchMonitor to both subjects, with one observer that
+ * occasionally stalls, and shows how it is reported and quarantined.
+ */
+public class DispatchMonitorSimulator {
+    public static void main(String[] args) {
+        DispatchMonitor monitor = new DispatchMonitor(TimeUnit.MILLISECONDS.toNanos(1), 3,
+                (stats, latency) -> System.out.println("SLO breach: " + stats.getObserver() + " took "
+                        + latency / 1000 + " us" + (stats.isQuarantined() ? ", quarantined" : "")));
+
+        WeatherData weatherData = new WeatherData();
+        weatherData.setDispatchMonitor(monitor);
+        weatherData.registerObserver(named("fast display", (temperature, humidity, pressure) -> { }));
+        weatherData.registerObserver(named("stalling display", (temperature, humidity, pressure) -> sleep(2)));
+        weatherData.registerObserver(named("async display", (temperature, humidity, pressure) -> sleep(1)),
+                OverflowPolicy.DROP_OLDEST, 32);
+
+        StockSubject stockSubject = new StockSubject();
+        stockSubject.setDispatchMonitor(monitor);
+        ConflatingObserver conflated = new ConflatingObserver(stockNamed("slow ticker", (stockName, price) -> sleep(1)));
+        monitor.registerQueueDepth(conflated, conflated::getPendingCount);
+        stockSubject.registerObserver(conflated);
+        stockSubject.registerObserver("AAPL", stockNamed("AAPL desk", (stockName, price) -> { }));
+
+        for (int i = 0; i < 1000; i++) {
+            weatherData.setMeasurements(20 + i % 10, 60, 1013);
+            stockSubject.setStockData(i % 2 == 0 ? "AAPL" : "MSFT", 100 + i);
+        }
+
+        System.out.println();
+        System.out.print(monitor.report());
+    }
+
+    private static Observer named(String name, Observer observer) {
+        return new Observer() {
+            @Override
+            public void update(float temperature, float humidity, float pressure) {
+                observer.update(temperature, humidity, pressure);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    private static com.headfirst.chapter2.observerPattern.notification.observers.Observer stockNamed(
+            String name, com.headfirst.chapter2.observerPattern.notification.observers.Observer observer) {
+        return new com.headfirst.chapter2.observerPattern.notification.observers.Observer() {
+            @Override
+            public void update(String stockName, float price) {
+                observer.update(stockName, price);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
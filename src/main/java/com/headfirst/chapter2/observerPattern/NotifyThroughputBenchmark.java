@@ -0,0 +1,61 @@
+package com.headfirst.chapter2.observerPattern;
+
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+/**
+ * Measures notifyObservers() throughput against the number of subscribers,
+ * for both subjects. Each configuration is warmed up before it is measured.
+ * The "stock id" column publishes through StockSubject's interned int path
+ * to TickObservers, the "stock" column through Strings to Observers.
+ *
+ * Usage: NotifyThroughputBenchmark [millisPerMeasurement]
+ */
+public class NotifyThroughputBenchmark {
+    private static final int[] SUBSCRIBER_COUNTS = {1, 10, 100, 1_000, 10_000};
+
+    // Written by the observers so the JIT cannot drop their work
+    private static volatile float sink;
+
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+
+        System.out.printf("%-12s %22s %22s %22s%n", "subscribers", "stock notify/s", "stock id notify/s",
+                "weather notify/s");
+        for (int subscribers : SUBSCRIBER_COUNTS) {
+            StockSubject stockSubject = new StockSubject();
+            StockSubject tickSubject = new StockSubject();
+            int symbolId = tickSubject.getSymbolTable().intern("AAPL");
+            WeatherData weatherData = new WeatherData();
+            for (int i = 0; i < subscribers; i++) {
+                stockSubject.registerObserver((stockName, price) -> sink = price);
+                tickSubject.registerTickObserver((id, price) -> sink = price);
+                weatherData.registerObserver((temperature, humidity, pressure) -> sink = temperature);
+            }
+
+            Runnable stockNotify = () -> stockSubject.setStockData("AAPL", 150.0f);
+            Runnable tickNotify = () -> tickSubject.setStockData(symbolId, 150.0f);
+            Runnable weatherNotify = () -> weatherData.setMeasurements(25.0f, 65.0f, 1013.0f);
+            measure(stockNotify, millis / 2); // Warm up
+            measure(tickNotify, millis / 2);
+            measure(weatherNotify, millis / 2);
+            System.out.printf("%-12d %22.0f %22.0f %22.0f%n", subscribers, measure(stockNotify, millis),
+                    measure(tickNotify, millis), measure(weatherNotify, millis));
+        }
+    }
+
+    private static double measure(Runnable notify, long millis) {
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        long now;
+        do {
+            for (int i = 0; i < 64; i++) {
+                notify.run();
+            }
+            operations += 64;
+            now = System.nanoTime();
+        } while (now < end);
+        return operations / ((now - start) / 1e9);
+    }
+}
@@ -0,0 +1,93 @@
+package com.headfirst.chapter2.observerPattern;
+
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registers and removes observers from several threads while other threads keep
+ * notifying. With the old ArrayList registries this failed with a
+ * ConcurrentModificationException almost immediately.
+ */
+public class ObserverRegistryStressTest {
+    private static final int MUTATOR_THREADS = 4;
+    private static final int PUBLISHER_THREADS = 4;
+    private static final long DURATION_MILLIS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        StockSubject stockSubject = new StockSubject();
+        WeatherData weatherData = new WeatherData();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong published = new AtomicLong();
+
+        // Observers that stay registered the whole time must see every notification
+        AtomicLong stockUpdates = new AtomicLong();
+        AtomicLong weatherUpdates = new AtomicLong();
+        stockSubject.registerObserver((stockName, price) -> stockUpdates.incrementAndGet());
+        weatherData.registerObserver((temperature, humidity, pressure) -> weatherUpdates.incrementAndGet());
+
+        long deadline = System.currentTimeMillis() + DURATION_MILLIS;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < MUTATOR_THREADS; t++) {
+            threads.add(new Thread(guard(failure, () -> {
+                Deque<com.headfirst.chapter2.observerPattern.notification.observers.Observer> stockObservers = new ArrayDeque<>();
+                Deque<com.headfirst.chapter2.observerPattern.weatherstation.observers.Observer> weatherObservers = new ArrayDeque<>();
+                while (System.currentTimeMillis() < deadline) {
+                    // Keep up to a few hundred observers per thread, churning at random
+                    if (stockObservers.size() < 200 && ThreadLocalRandom.current().nextBoolean()) {
+                        com.headfirst.chapter2.observerPattern.notification.observers.Observer stockObserver = (stockName, price) -> { };
+                        com.headfirst.chapter2.observerPattern.weatherstation.observers.Observer weatherObserver = (temperature, humidity, pressure) -> { };
+                        stockSubject.registerObserver(stockObserver);
+                        weatherData.registerObserver(weatherObserver);
+                        stockObservers.push(stockObserver);
+                        weatherObservers.push(weatherObserver);
+                    } else if (!stockObservers.isEmpty()) {
+                        stockSubject.removeObserver(stockObservers.pop());
+                        weatherData.removeObserver(weatherObservers.pop());
+                    }
+                }
+            })));
+        }
+        for (int t = 0; t < PUBLISHER_THREADS; t++) {
+            threads.add(new Thread(guard(failure, () -> {
+                while (System.currentTimeMillis() < deadline) {
+                    stockSubject.setStockData("AAPL", 150.0f);
+                    weatherData.setMeasurements(25.0f, 65.0f, 1013.0f);
+                    published.incrementAndGet();
+                }
+            })));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("Registry failed under concurrency", failure.get());
+        }
+        if (stockUpdates.get() != published.get() || weatherUpdates.get() != published.get()) {
+            throw new AssertionError("Lost notifications: published " + published.get() + ", stock observer saw "
+                    + stockUpdates.get() + ", weather observer saw " + weatherUpdates.get());
+        }
+        System.out.println("OK: " + published.get() + " notifications while observers were added and removed concurrently");
+    }
+
+    private static Runnable guard(AtomicReference<Throwable> failure, Runnable body) {
+        return () -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+    }
+}
@@ -0,0 +1,258 @@
+package com.headfirst.chapter2.observerPattern.flow;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flow.Publisher that turns pushed items into demand-driven streams.
+ *
+ * Every subscriber has its own buffer of at most {@code bufferSize} items. Items
+ * are delivered only as far as the subscriber has requested them; once its buffer
+ * is full the {@link OverflowStrategy} decides what happens, so a fast producer
+ * can never grow memory without bound. Signals to each subscriber are serialized
+ * and run on the executor, never on the publishing thread.
+ *
+ * @param <T> the item type
+ */
+public class BackpressurePublisher<T> implements Flow.Publisher<T>, AutoCloseable {
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "flow-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor executor;
+    private final int bufferSize;
+    private final OverflowStrategy strategy;
+    private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    public BackpressurePublisher(int bufferSize, OverflowStrategy strategy) {
+        this(bufferSize, strategy, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * @param executor runs the deliveries; must not run them on the calling thread when using BLOCK
+     */
+    public BackpressurePublisher(int bufferSize, OverflowStrategy strategy, Executor executor) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.strategy = strategy;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        BufferedSubscription subscription = new BufferedSubscription(subscriber);
+        subscriptions.add(subscription);
+        if (closed) {
+            subscription.complete();
+        }
+        subscription.schedule();
+    }
+
+    /**
+     * Hands the item to every current subscriber.
+     */
+    public void submit(T item) {
+        Objects.requireNonNull(item, "item");
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.offer(item);
+        }
+    }
+
+    /**
+     * Completes every subscriber once it has consumed its buffer.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Number of items discarded by DROP_OLDEST or DROP_NEWEST, over all subscribers.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private final class BufferedSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        private final AtomicInteger wip = new AtomicInteger();
+        private long demand;
+        private boolean subscribed;
+        private boolean completed;
+        private boolean cancelled;
+        private Throwable error;
+
+        BufferedSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(T item) {
+            lock.lock();
+            try {
+                if (cancelled || completed || error != null) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    switch (strategy) {
+                        case BLOCK:
+                            while (buffer.size() >= bufferSize && !cancelled) {
+                                notFull.awaitUninterruptibly();
+                            }
+                            if (cancelled) {
+                                return;
+                            }
+                            break;
+                        case DROP_OLDEST:
+                            buffer.pollFirst();
+                            dropped.increment();
+                            break;
+                        case DROP_NEWEST:
+                            dropped.increment();
+                            return;
+                        case ERROR:
+                            buffer.clear();
+                            error = new SubscriberOverflowException("Subscriber fell more than " + bufferSize + " items behind");
+                            schedule();
+                            return;
+                        default:
+                            throw new IllegalStateException("Unknown strategy: " + strategy);
+                    }
+                }
+                buffer.addLast(item);
+            } finally {
+                lock.unlock();
+            }
+            schedule();
+        }
+
+        void complete() {
+            lock.lock();
+            try {
+                completed = true;
+            } finally {
+                lock.unlock();
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (n <= 0) {
+                    // Rule 3.9: non-positive requests are signalled as errors
+                    buffer.clear();
+                    error = new IllegalArgumentException("Requested " + n + " items, must be positive");
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            } finally {
+                lock.unlock();
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                buffer.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            subscriptions.remove(this);
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Runs on one thread at a time (guarded by wip), so signals are never concurrent.
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                while (true) {
+                    T item;
+                    Throwable failure = null;
+                    boolean done = false;
+                    lock.lock();
+                    try {
+                        if (cancelled) {
+                            break;
+                        }
+                        if (error != null) {
+                            failure = error;
+                            cancelled = true;
+                        } else if (demand > 0 && !buffer.isEmpty()) {
+                            demand--;
+                        } else if (completed && buffer.isEmpty()) {
+                            done = true;
+                            cancelled = true;
+                        } else {
+                            break;
+                        }
+                        item = failure == null && !done ? buffer.pollFirst() : null;
+                        notFull.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (failure != null) {
+                        subscriptions.remove(this);
+                        subscriber.onError(failure);
+                        break;
+                    }
+                    if (done) {
+                        subscriptions.remove(this);
+                        subscriber.onComplete();
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(item);
+                    } catch (RuntimeException e) {
+                        // Rule 2.13: a subscriber that throws is treated as cancelled
+                        cancel();
+                        System.err.println("Subscriber " + subscriber + " failed: " + e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
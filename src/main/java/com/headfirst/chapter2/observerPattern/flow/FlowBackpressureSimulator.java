@@ -0,0 +1,93 @@
+package com.headfirst.chapter2.observerPattern.flow;
+
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.Measurement;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Floods both subjects while slow subscribers pull at their own rate, and shows
+ * that the per-subscriber buffers stay bounded under each overflow strategy.
+ */
+public class FlowBackpressureSimulator {
+    public static void main(String[] args) throws InterruptedException {
+        StockSubject stockSubject = new StockSubject();
+        StockSubjectPublisher quotes = new StockSubjectPublisher(stockSubject, "*", 256, OverflowStrategy.DROP_OLDEST);
+        SlowSubscriber<StockQuote> quoteReader = new SlowSubscriber<>("quotes", 16);
+        quotes.subscribe(quoteReader);
+
+        WeatherData weatherData = new WeatherData();
+        WeatherDataPublisher measurements = new WeatherDataPublisher(weatherData, 64, OverflowStrategy.ERROR);
+        SlowSubscriber<Measurement> measurementReader = new SlowSubscriber<>("measurements", 16);
+        measurements.subscribe(measurementReader);
+
+        for (int i = 0; i < 1_000_000; i++) {
+            stockSubject.setStockData(i % 2 == 0 ? "AAPL" : "GOOG", 100 + i % 100);
+            weatherData.setMeasurements(20 + i % 10, 60, 1013);
+        }
+        quotes.close();
+        measurements.close();
+        quoteReader.done.await(10, TimeUnit.SECONDS);
+        measurementReader.done.await(10, TimeUnit.SECONDS);
+
+        System.out.println("Published 1000000 quotes and measurements");
+        System.out.println("DROP_OLDEST quotes: received " + quoteReader.received + ", dropped " + quotes.getDroppedCount());
+        System.out.println("ERROR measurements: received " + measurementReader.received);
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println("Heap used: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB");
+    }
+
+    /**
+     * Requests a small batch at a time and takes a while over each item.
+     */
+    private static final class SlowSubscriber<T> implements Flow.Subscriber<T> {
+        final String name;
+        final int batch;
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicLong received = new AtomicLong();
+        Flow.Subscription subscription;
+        int outstanding;
+
+        SlowSubscriber(String name, int batch) {
+            this.name = name;
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            outstanding = batch;
+            subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(T item) {
+            received.incrementAndGet();
+            try {
+                TimeUnit.MICROSECONDS.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (--outstanding == 0) {
+                outstanding = batch;
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            System.out.println(name + " failed: " + throwable.getMessage());
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            System.out.println(name + " completed");
+            done.countDown();
+        }
+    }
+}
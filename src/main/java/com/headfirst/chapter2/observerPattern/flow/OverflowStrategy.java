@@ -0,0 +1,25 @@
+package com.headfirst.chapter2.observerPattern.flow;
+
+/**
+ * What a {@link BackpressurePublisher} does with a new item when a subscriber's
+ * buffer is full because it has not requested enough.
+ */
+public enum OverflowStrategy {
+    /**
+     * The publishing thread waits until the subscriber requests more.
+     */
+    BLOCK,
+    /**
+     * The oldest buffered item is discarded to make room.
+     */
+    DROP_OLDEST,
+    /**
+     * The new item is discarded.
+     */
+    DROP_NEWEST,
+    /**
+     * The subscription is cancelled and the subscriber receives onError with a
+     * {@link SubscriberOverflowException}.
+     */
+    ERROR
+}
@@ -0,0 +1,27 @@
+package com.headfirst.chapter2.observerPattern.flow;
+
+/**
+ * Immutable price update published by {@link StockSubjectPublisher}.
+ */
+public final class StockQuote {
+    private final String symbol;
+    private final float price;
+
+    public StockQuote(String symbol, float price) {
+        this.symbol = symbol;
+        this.price = price;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public float getPrice() {
+        return price;
+    }
+
+    @Override
+    public String toString() {
+        return symbol + " $" + price;
+    }
+}
@@ -0,0 +1,40 @@
+package com.headfirst.chapter2.observerPattern.flow;
+
+import com.headfirst.chapter2.observerPattern.notification.observers.Observer;
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Publishes the ticks of one StockSubject topic as a Flow, with per-subscriber
+ * buffers and backpressure. Closing it unregisters from the subject and completes the subscribers.
+ */
+public class StockSubjectPublisher extends BackpressurePublisher<StockQuote> {
+    private final StockSubject stockSubject;
+    private final String topic;
+    private final Observer observer = (stockName, price) -> submit(new StockQuote(stockName, price));
+
+    /**
+     * @param topic an exact symbol, a prefix ending in "*", or "*" for every symbol
+     */
+    public StockSubjectPublisher(StockSubject stockSubject, String topic, int bufferSize, OverflowStrategy strategy) {
+        super(bufferSize, strategy);
+        this.stockSubject = stockSubject;
+        this.topic = topic;
+        stockSubject.registerObserver(topic, observer);
+    }
+
+    public StockSubjectPublisher(StockSubject stockSubject, String topic, int bufferSize, OverflowStrategy strategy,
+                                 Executor executor) {
+        super(bufferSize, strategy, executor);
+        this.stockSubject = stockSubject;
+        this.topic = topic;
+        stockSubject.registerObserver(topic, observer);
+    }
+
+    @Override
+    public void close() {
+        stockSubject.removeObserver(topic, observer);
+        super.close();
+    }
+}
@@ -0,0 +1,13 @@
+package com.headfirst.chapter2.observerPattern.flow;
+
+/**
+ * Signalled to a subscriber under {@link OverflowStrategy#ERROR} when it falls
+ * more than its buffer behind.
+ */
+public class SubscriberOverflowException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SubscriberOverflowException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,35 @@
+package com.headfirst.chapter2.observerPattern.flow;
+
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.Measurement;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.Observer;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Publishes a WeatherData's measurements as a Flow, with per-subscriber buffers
+ * and backpressure. Closing it unregisters from the subject and completes the subscribers.
+ */
+public class WeatherDataPublisher extends BackpressurePublisher<Measurement> {
+    private final WeatherData weatherData;
+    private final Observer observer = (temperature, humidity, pressure) ->
+            submit(new Measurement(temperature, humidity, pressure));
+
+    public WeatherDataPublisher(WeatherData weatherData, int bufferSize, OverflowStrategy strategy) {
+        super(bufferSize, strategy);
+        this.weatherData = weatherData;
+        weatherData.registerObserver(observer);
+    }
+
+    public WeatherDataPublisher(WeatherData weatherData, int bufferSize, OverflowStrategy strategy, Executor executor) {
+        super(bufferSize, strategy, executor);
+        this.weatherData = weatherData;
+        weatherData.registerObserver(observer);
+    }
+
+    @Override
+    public void close() {
+        weatherData.removeObserver(observer);
+        super.close();
+    }
+}
@@ -0,0 +1,52 @@
+package com.headfirst.chapter2.observerPattern.journal;
+
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Journals a few million ticks, then lets a late-joining dashboard replay the
+ * last part of them from the mapped file before it switches to live ticks.
+ *
+ * Usage: JournalReplaySimulator [ticks]
+ */
+public class JournalReplaySimulator {
+    private static final String[] SYMBOLS = {"AAPL", "GOOGL", "MSFT", "AMZN"};
+
+    public static void main(String[] args) throws IOException {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path file = Files.createTempFile("ticks", ".journal");
+        Files.delete(file);
+
+        StockSubject stockSubject = new StockSubject();
+        long[] clock = {0};
+        try (TickJournal journal = new TickJournal(file, stockSubject, () -> clock[0])) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                clock[0] = i; // One tick per simulated millisecond
+                stockSubject.setStockData(SYMBOLS[i % SYMBOLS.length], 100 + i % 50);
+            }
+            System.out.printf("Journaled %d ticks in %d ms%n", ticks, (System.nanoTime() - start) / 1_000_000);
+
+            // The dashboard restarts and wants the last half of the session
+            AtomicLong received = new AtomicLong();
+            float[] lastPrice = new float[1];
+            start = System.nanoTime();
+            journal.subscribeFrom(ticks / 2, (stockName, price) -> {
+                received.incrementAndGet();
+                lastPrice[0] = price;
+            });
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Replayed %d ticks in %d ms (%.1f M ticks/s), last price %.1f%n", received.get(),
+                    elapsed / 1_000_000, received.get() / (elapsed / 1e3), lastPrice[0]);
+
+            stockSubject.setStockData("AAPL", 999);
+            System.out.println("Live tick delivered: " + (lastPrice[0] == 999));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.headfirst.chapter2.observerPattern.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only file of fixed-size records, each starting with a timestamp, that
+ * is written and read through memory-mapped regions.
+ *
+ * Records are addressed by their offset (0, 1, 2, ...). The committed record
+ * count lives in the file header and is updated after each record is written,
+ * so a reopened journal resumes after the last complete record. One thread
+ * appends at a time; any number may read concurrently, and a record is visible
+ * to readers as soon as {@link #size()} covers it.
+ */
+public class MappedJournal implements AutoCloseable {
+    static final long DEFAULT_REGION_SIZE = 64L << 20;
+    private static final int MAGIC = 0x4A524E4C; // "JRNL"
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 8;
+
+    /**
+     * Writes a record's payload, which starts at {@code position} in the buffer.
+     */
+    public interface RecordWriter {
+        void write(ByteBuffer buffer, int position);
+    }
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final long recordsPerRegion;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private volatile long size;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Opens the journal, creating it if needed.
+     *
+     * @param payloadSize bytes per record after the 8-byte timestamp
+     */
+    public MappedJournal(Path file, int payloadSize) throws IOException {
+        this(file, payloadSize, DEFAULT_REGION_SIZE);
+    }
+
+    MappedJournal(Path file, int payloadSize, long regionSize) throws IOException {
+        this.recordSize = Long.BYTES + payloadSize;
+        this.recordsPerRegion = regionSize / recordSize;
+        if (payloadSize < 0 || recordsPerRegion == 0) {
+            throw new IllegalArgumentException("Invalid payload size: " + payloadSize);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, recordSize);
+            header.putLong(COUNT_OFFSET, 0);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != recordSize) {
+            channel.close();
+            throw new IOException("Not a journal with " + recordSize + "-byte records: " + file);
+        }
+        this.size = header.getLong(COUNT_OFFSET);
+        if (size > 0) {
+            region(size - 1); // Map the existing records
+            lastTimestamp = getTimestamp(size - 1);
+        }
+    }
+
+    /**
+     * Appends a record. Timestamps older than the previous record's are raised to
+     * it, so the journal stays sorted for {@link #offsetOf(long)}.
+     *
+     * @return the record's offset
+     */
+    public long append(long timestamp, RecordWriter writer) {
+        long offset = size;
+        ByteBuffer region = region(offset);
+        int position = position(offset);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        region.putLong(position, lastTimestamp);
+        writer.write(region, position + Long.BYTES);
+        header.putLong(COUNT_OFFSET, offset + 1);
+        size = offset + 1; // Publishes the record to readers
+        return offset;
+    }
+
+    /**
+     * @return the number of committed records
+     */
+    public long size() {
+        return size;
+    }
+
+    public long getTimestamp(long offset) {
+        return buffer(offset).getLong(position(offset));
+    }
+
+    /**
+     * @return the buffer holding the record; its payload starts at {@link #payloadPosition(long)}
+     */
+    public ByteBuffer buffer(long offset) {
+        if (offset < 0 || offset >= size) {
+            throw new IndexOutOfBoundsException("Offset " + offset + ", size " + size);
+        }
+        return regions[(int) (offset / recordsPerRegion)];
+    }
+
+    public int payloadPosition(long offset) {
+        return position(offset) + Long.BYTES;
+    }
+
+    /**
+     * @return the offset of the first record at or after the timestamp, or size() if there is none
+     */
+    public long offsetOf(long timestamp) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (getTimestamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Flushes written records to the storage device.
+     */
+    public void force() {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private int position(long offset) {
+        return (int) (offset % recordsPerRegion) * recordSize;
+    }
+
+    private ByteBuffer region(long offset) {
+        int index = (int) (offset / recordsPerRegion);
+        MappedByteBuffer[] current = regions;
+        if (index < current.length) {
+            return current[index];
+        }
+        try {
+            long regionBytes = recordsPerRegion * recordSize;
+            MappedByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+            for (int i = current.length; i <= index; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * regionBytes, regionBytes);
+            }
+            regions = grown;
+            return grown[index];
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to map journal region " + index, e);
+        }
+    }
+}
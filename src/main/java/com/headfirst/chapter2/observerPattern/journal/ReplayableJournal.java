@@ -0,0 +1,109 @@
+package com.headfirst.chapter2.observerPattern.journal;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Journals a subject's updates and lets late-joining observers catch up: a new
+ * subscriber first replays the journal from an offset or timestamp, straight
+ * from the mapped file, and then switches to live updates without a gap or a
+ * duplicate.
+ *
+ * Appends are serialized by a lock; deliveries happen outside it. Each
+ * subscription has a cursor, and at most one thread at a time advances it, so an
+ * observer sees records in offset order without gaps or duplicates. A publisher
+ * that finds a subscription busy leaves its record to the thread already
+ * delivering there, so one slow observer does not block other publishers.
+ * Replay runs on the subscribing thread, which holds its subscription until it
+ * has caught up, so publishers are not held up by a long replay.
+ *
+ * @param <O> the observer type
+ */
+public abstract class ReplayableJournal<O> implements AutoCloseable {
+    protected final MappedJournal journal;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object appendLock = new Object();
+
+    protected ReplayableJournal(MappedJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Replays every record from the timestamp on, then delivers live updates.
+     */
+    public void subscribeFrom(long timestampMillis, O observer) {
+        subscribeFromOffset(journal.offsetOf(timestampMillis), observer);
+    }
+
+    /**
+     * Replays every record from the offset on, then delivers live updates.
+     */
+    public void subscribeFromOffset(long offset, O observer) {
+        Subscription subscription = new Subscription(observer, Math.max(0, offset));
+        subscription.delivering.set(true); // Publishers skip it until the replay has caught up
+        subscriptions.add(subscription);
+        subscription.deliverPending();
+    }
+
+    public void unsubscribe(O observer) {
+        subscriptions.removeIf(subscription -> subscription.observer == observer);
+    }
+
+    public long size() {
+        return journal.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Called by subclasses from their observer callback.
+     */
+    protected void append(long timestampMillis, MappedJournal.RecordWriter writer) {
+        synchronized (appendLock) {
+            journal.append(timestampMillis, writer);
+        }
+        for (Subscription subscription : subscriptions) {
+            if (subscription.delivering.compareAndSet(false, true)) {
+                subscription.deliverPending();
+            }
+        }
+    }
+
+    /**
+     * Reads the record at the offset and passes it to the observer.
+     */
+    protected abstract void deliver(O observer, long offset);
+
+    private final class Subscription {
+        final O observer;
+        // Held by the one thread advancing next; taking and releasing it publishes next
+        final AtomicBoolean delivering = new AtomicBoolean();
+        long next;
+
+        Subscription(O observer, long next) {
+            this.observer = observer;
+            this.next = next;
+        }
+
+        /**
+         * Delivers every record up to the end of the journal; the caller holds delivering.
+         * Checks again after releasing it, in case a publisher skipped this subscription meanwhile.
+         */
+        void deliverPending() {
+            do {
+                try {
+                    while (next < journal.size()) {
+                        deliver(observer, next++);
+                    }
+                } finally {
+                    delivering.set(false);
+                }
+            } while (next < journal.size() && delivering.compareAndSet(false, true));
+        }
+    }
+}
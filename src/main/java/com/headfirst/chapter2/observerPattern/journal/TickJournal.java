@@ -0,0 +1,81 @@
+package com.headfirst.chapter2.observerPattern.journal;
+
+import com.headfirst.chapter2.observerPattern.notification.observers.Observer;
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Records every tick a StockSubject publishes, so observers that start late can
+ * replay recent prices before receiving live ticks. Each record is a timestamp,
+ * the price and the symbol as up to 19 ASCII characters, 32 bytes in all.
+ * Ticks of longer symbols are skipped and counted rather than failing the
+ * subject's dispatch to the observers after the journal.
+ */
+public class TickJournal extends ReplayableJournal<Observer> implements Observer {
+    static final int MAX_SYMBOL_LENGTH = 19;
+    private static final int PAYLOAD_SIZE = Float.BYTES + 1 + MAX_SYMBOL_LENGTH;
+
+    private final StockSubject stockSubject;
+    private final LongSupplier clock;
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * Opens or creates the journal file and starts recording every symbol's ticks.
+     */
+    public TickJournal(Path file, StockSubject stockSubject) throws IOException {
+        this(file, stockSubject, System::currentTimeMillis);
+    }
+
+    public TickJournal(Path file, StockSubject stockSubject, LongSupplier clock) throws IOException {
+        super(new MappedJournal(file, PAYLOAD_SIZE));
+        this.stockSubject = stockSubject;
+        this.clock = clock;
+        stockSubject.registerObserver(this);
+    }
+
+    @Override
+    public void update(String stockName, float price) {
+        if (stockName.length() > MAX_SYMBOL_LENGTH) {
+            skipped.increment();
+            return;
+        }
+        append(clock.getAsLong(), (buffer, position) -> {
+            buffer.putFloat(position, price);
+            buffer.put(position + 4, (byte) stockName.length());
+            for (int i = 0; i < stockName.length(); i++) {
+                buffer.put(position + 5 + i, (byte) stockName.charAt(i));
+            }
+        });
+    }
+
+    /**
+     * @return the number of ticks not journaled because their symbol is too long
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    @Override
+    protected void deliver(Observer observer, long offset) {
+        ByteBuffer buffer = journal.buffer(offset);
+        int position = journal.payloadPosition(offset);
+        byte[] symbol = new byte[buffer.get(position + 4)];
+        buffer.get(position + 5, symbol, 0, symbol.length);
+        observer.update(new String(symbol, StandardCharsets.US_ASCII), buffer.getFloat(position));
+    }
+
+    /**
+     * Stops recording and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        stockSubject.removeObserver(this);
+        super.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.headfirst.chapter2.observerPattern.journal;
+
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.Observer;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+/**
+ * Records every measurement WeatherData publishes, so displays that start late
+ * can replay recent history before receiving live updates.
+ * Each record is a timestamp and the three readings, 20 bytes.
+ */
+public class WeatherJournal extends ReplayableJournal<Observer> implements Observer {
+    private static final int PAYLOAD_SIZE = 3 * Float.BYTES;
+
+    private final WeatherData weatherData;
+    private final LongSupplier clock;
+
+    /**
+     * Opens or creates the journal file and starts recording the subject's measurements.
+     */
+    public WeatherJournal(Path file, WeatherData weatherData) throws IOException {
+        this(file, weatherData, System::currentTimeMillis);
+    }
+
+    public WeatherJournal(Path file, WeatherData weatherData, LongSupplier clock) throws IOException {
+        super(new MappedJournal(file, PAYLOAD_SIZE));
+        this.weatherData = weatherData;
+        this.clock = clock;
+        weatherData.registerObserver(this);
+    }
+
+    @Override
+    public void update(float temperature, float humidity, float pressure) {
+        append(clock.getAsLong(), (buffer, position) -> {
+            buffer.putFloat(position, temperature);
+            buffer.putFloat(position + 4, humidity);
+            buffer.putFloat(position + 8, pressure);
+        });
+    }
+
+    @Override
+    protected void deliver(Observer observer, long offset) {
+        ByteBuffer buffer = journal.buffer(offset);
+        int position = journal.payloadPosition(offset);
+        observer.update(buffer.getFloat(position), buffer.getFloat(position + 4), buffer.getFloat(position + 8));
+    }
+
+    /**
+     * Stops recording and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        weatherData.removeObserver(this);
+        super.close();
+    }
+}
@@ -0,0 +1,96 @@
+package com.headfirst.chapter2.observerPattern.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Times every observer update a subject dispatches and keeps per-observer
+ * {@link ObserverStats}. Updates slower than the SLO are reported to the
+ * listener; after {@code quarantineAfter} consecutive breaches the observer is
+ * quarantined, and the subject skips it until {@link #release} is called.
+ *
+ * Attach one with the subject's setDispatchMonitor(). Without a monitor the
+ * subjects dispatch exactly as before; with one, each update costs two
+ * System.nanoTime() calls, a map lookup and a histogram increment.
+ */
+public class DispatchMonitor {
+    private final long sloNanos;
+    private final int quarantineAfter;
+    private final SlowObserverListener listener;
+    private final Map<Object, ObserverStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param sloNanos        latency above which an update counts as a breach
+     * @param quarantineAfter consecutive breaches before quarantine; 0 never quarantines
+     * @param listener        told about every breach, may be null
+     */
+    public DispatchMonitor(long sloNanos, int quarantineAfter, SlowObserverListener listener) {
+        if (sloNanos <= 0 || quarantineAfter < 0) {
+            throw new IllegalArgumentException("SLO must be positive and quarantineAfter non-negative");
+        }
+        this.sloNanos = sloNanos;
+        this.quarantineAfter = quarantineAfter;
+        this.listener = listener;
+    }
+
+    public ObserverStats statsFor(Object observer) {
+        return stats.computeIfAbsent(observer, ObserverStats::new);
+    }
+
+    /**
+     * Reports the depth of an observer's queue alongside its latencies.
+     */
+    public void registerQueueDepth(Object observer, IntSupplier queueDepth) {
+        statsFor(observer).setQueueDepth(queueDepth);
+    }
+
+    public boolean isQuarantined(Object observer) {
+        ObserverStats observerStats = stats.get(observer);
+        return observerStats != null && observerStats.isQuarantined();
+    }
+
+    /**
+     * Lets a quarantined observer receive updates again.
+     */
+    public void release(Object observer) {
+        ObserverStats observerStats = stats.get(observer);
+        if (observerStats != null) {
+            observerStats.setQuarantined(false);
+        }
+    }
+
+    /**
+     * Stops tracking an observer that was removed from its subject.
+     */
+    public void forget(Object observer) {
+        stats.remove(observer);
+    }
+
+    public void record(ObserverStats observerStats, long latencyNanos) {
+        observerStats.getLatencies().record(latencyNanos);
+        int breaches = observerStats.recordSlo(latencyNanos > sloNanos);
+        if (breaches > 0) {
+            if (quarantineAfter > 0 && breaches >= quarantineAfter) {
+                observerStats.setQuarantined(true);
+            }
+            if (listener != null) {
+                listener.onSlowUpdate(observerStats, latencyNanos);
+            }
+        }
+    }
+
+    public List<ObserverStats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (ObserverStats observerStats : stats.values()) {
+            report.append(observerStats).append('\n');
+        }
+        return report.toString();
+    }
+}
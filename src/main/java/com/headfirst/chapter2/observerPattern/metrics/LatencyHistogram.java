@@ -0,0 +1,65 @@
+package com.headfirst.chapter2.observerPattern.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram: 16 sub-buckets per power of two, so each bucket
+ * is within about 6% of the values it holds. Recording is a couple of atomic
+ * increments and never allocates; it is safe from several threads at once.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = 4;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(1, nanos);
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = exponent < SUB_BITS
+                ? (int) value & (SUB_BUCKETS - 1)
+                : (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        counts.incrementAndGet(exponent * SUB_BUCKETS + sub);
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @return the lower bound of the bucket holding the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long target = Math.max(1, (long) Math.ceil(total.get() * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            seen += count;
+            if (seen >= target && count > 0) {
+                int exponent = i / SUB_BUCKETS;
+                int sub = i % SUB_BUCKETS;
+                return exponent < SUB_BITS ? sub : (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+            }
+        }
+        return total.get() == 0 ? 0 : max.get();
+    }
+}
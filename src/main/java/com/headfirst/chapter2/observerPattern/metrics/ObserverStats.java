@@ -0,0 +1,79 @@
+package com.headfirst.chapter2.observerPattern.metrics;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Dispatch statistics of one observer: call count and latency histogram, SLO
+ * breaches, quarantine state and, for observers with a queue, its depth.
+ */
+public class ObserverStats {
+    private final Object observer;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private volatile IntSupplier queueDepth;
+    private volatile long sloBreaches;
+    private volatile int consecutiveBreaches;
+    private volatile boolean quarantined;
+
+    ObserverStats(Object observer) {
+        this.observer = observer;
+    }
+
+    public Object getObserver() {
+        return observer;
+    }
+
+    public long getCallCount() {
+        return latencies.getCount();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public long getSloBreaches() {
+        return sloBreaches;
+    }
+
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+
+    /**
+     * @return the observer's queue depth, or -1 if it has no queue
+     */
+    public int getQueueDepth() {
+        IntSupplier gauge = queueDepth;
+        return gauge == null ? -1 : gauge.getAsInt();
+    }
+
+    void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    void setQuarantined(boolean quarantined) {
+        this.quarantined = quarantined;
+        this.consecutiveBreaches = 0;
+    }
+
+    /**
+     * Counters are only updated by the thread dispatching to this observer; races
+     * between publisher threads may lose a count, which is fine for monitoring.
+     *
+     * @return the number of consecutive breaches so far, 0 if within the SLO
+     */
+    int recordSlo(boolean breached) {
+        if (!breached) {
+            consecutiveBreaches = 0;
+            return 0;
+        }
+        sloBreaches++;
+        return ++consecutiveBreaches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-40s calls=%-9d p50=%-8d p99=%-8d max=%-10d breaches=%-5d queue=%-5d%s",
+                observer, getCallCount(), latencies.getPercentile(50), latencies.getPercentile(99),
+                latencies.getMax(), sloBreaches, getQueueDepth(), quarantined ? " QUARANTINED" : "");
+    }
+}
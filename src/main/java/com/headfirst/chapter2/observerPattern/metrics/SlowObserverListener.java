@@ -0,0 +1,12 @@
+package com.headfirst.chapter2.observerPattern.metrics;
+
+/**
+ * Called by a {@link DispatchMonitor} when an observer's update exceeds the latency SLO.
+ */
+public interface SlowObserverListener {
+    /**
+     * @param stats       the observer's statistics, including whether it has just been quarantined
+     * @param latencyNanos how long the offending update took
+     */
+    void onSlowUpdate(ObserverStats stats, long latencyNanos);
+}
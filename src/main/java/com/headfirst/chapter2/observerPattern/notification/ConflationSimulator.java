@@ -0,0 +1,38 @@
+package com.headfirst.chapter2.observerPattern.notification;
+
+import com.headfirst.chapter2.observerPattern.notification.observers.ConflatingObserver;
+import com.headfirst.chapter2.observerPattern.notification.observers.EmailObserver;
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+
+/**
+ * A slow email observer falls behind a fast market; conflation keeps it on the latest prices.
+ */
+public class ConflationSimulator {
+    public static void main(String[] args) throws InterruptedException {
+        StockSubject stockSubject = new StockSubject();
+
+        EmailObserver slowEmail = new EmailObserver() {
+            @Override
+            public void update(String stockName, float price) {
+                try {
+                    Thread.sleep(50); // A mail relay round trip
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.update(stockName, price);
+            }
+        };
+        ConflatingObserver conflating = new ConflatingObserver(slowEmail);
+        stockSubject.registerObserver(conflating);
+
+        // 1000 ticks over two symbols arrive much faster than 50 ms each
+        for (int i = 0; i < 500; i++) {
+            stockSubject.setStockData("AAPL", 150.0f + i / 100.0f);
+            stockSubject.setStockData("GOOGL", 2800.0f + i / 100.0f);
+        }
+        Thread.sleep(300);
+
+        System.out.println("Delivered " + conflating.getDeliveredCount() + " emails, skipped "
+                + conflating.getConflatedCount() + " stale prices, " + conflating.getPendingCount() + " pending");
+    }
+}
@@ -0,0 +1,47 @@
+package com.headfirst.chapter2.observerPattern.notification;
+
+import com.headfirst.chapter2.observerPattern.notification.email.DigestBatcher;
+import com.headfirst.chapter2.observerPattern.notification.email.InMemoryNotificationSender;
+import com.headfirst.chapter2.observerPattern.notification.observers.EmailObserver;
+import com.headfirst.chapter2.observerPattern.notification.subject.StockSubject;
+
+import java.util.Random;
+
+/**
+ * Publishes a burst of ticks to emailed recipients in digest mode and shows that
+ * the number of mails sent stays under the cap, however many ticks arrive.
+ *
+ * Usage: DigestEmailSimulator [seconds] [maxSendsPerSecond]
+ */
+public class DigestEmailSimulator {
+    private static final String[] SYMBOLS = {"AAPL", "GOOG", "GOOGL", "MSFT", "AMZN", "TSLA"};
+
+    public static void main(String[] args) {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        double maxSendsPerSecond = args.length > 1 ? Double.parseDouble(args[1]) : 20;
+
+        StockSubject stockSubject = new StockSubject();
+        InMemoryNotificationSender relay = new InMemoryNotificationSender(2);
+        DigestBatcher batcher = new DigestBatcher(relay, 50, 1000, maxSendsPerSecond);
+        for (int i = 0; i < 100; i++) {
+            String topic = i % 2 == 0 ? "*" : SYMBOLS[i % SYMBOLS.length];
+            stockSubject.registerObserver(topic, new EmailObserver("user" + i + "@example.com", batcher));
+        }
+
+        Random random = new Random(7);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long ticks = 0;
+        while (System.nanoTime() < end) {
+            stockSubject.setStockData(SYMBOLS[random.nextInt(SYMBOLS.length)], 100 + random.nextFloat() * 10);
+            ticks++;
+        }
+        batcher.close();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d ticks, %d notifications, %d mails sent (%.1f/s, cap %.1f/s), %d failed%n",
+                ticks, batcher.getNotificationCount(), batcher.getSendCount(),
+                batcher.getSendCount() / elapsed, maxSendsPerSecond, batcher.getFailedSendCount());
+        System.out.println("First digest:\n" + relay.getSentMessages().get(0));
+    }
+}
@@ -10,8 +10,13 @@ public class NotificationSystemSimulator {
         EmailObserver emailObserver = new EmailObserver();
         stockSubject.registerObserver(emailObserver);
 
+        // Subscribe to a single symbol and to every symbol starting with "GOO"
+        stockSubject.registerObserver("AAPL", (stockName, price) -> System.out.println("AAPL desk - " + price));
+        stockSubject.registerObserver("GOO*", (stockName, price) -> System.out.println("GOO* desk - " + stockName + " " + price));
+
         // Simulate stock price updates
         stockSubject.setStockData("AAPL", 150.0f);
         stockSubject.setStockData("GOOGL", 2800.0f);
+        stockSubject.setStockData("MSFT", 410.0f);
     }
 }
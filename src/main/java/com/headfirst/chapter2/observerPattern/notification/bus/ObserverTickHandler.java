@@ -0,0 +1,19 @@
+package com.headfirst.chapter2.observerPattern.notification.bus;
+
+import com.headfirst.chapter2.observerPattern.notification.observers.Observer;
+
+/**
+ * Adapts an {@link Observer} to the bus.
+ */
+public class ObserverTickHandler implements TickHandler {
+    private final Observer observer;
+
+    public ObserverTickHandler(Observer observer) {
+        this.observer = observer;
+    }
+
+    @Override
+    public void onTick(StockTick tick, long sequence, boolean endOfBatch) {
+        observer.update(tick.symbol, tick.price);
+    }
+}
@@ -0,0 +1,48 @@
+package com.headfirst.chapter2.observerPattern.notification.bus;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Position counter padded onto its own cache line, so the publisher's cursor and
+ * the consumers' sequences do not invalidate each other's lines (false sharing).
+ * Superclass fields are laid out first, which keeps the padding on both sides.
+ */
+class Sequence extends SequenceValue {
+    @SuppressWarnings("unused")
+    private long p9, p10, p11, p12, p13, p14, p15;
+
+    Sequence(long initial) {
+        setRelease(initial);
+    }
+}
+
+class SequencePadding {
+    @SuppressWarnings("unused")
+    private long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class SequenceValue extends SequencePadding {
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long value;
+
+    long getAcquire() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    /**
+     * Publishes every write made before it; cheaper than a volatile write.
+     */
+    void setRelease(long newValue) {
+        VALUE.setRelease(this, newValue);
+    }
+}
@@ -0,0 +1,26 @@
+package com.headfirst.chapter2.observerPattern.notification.bus;
+
+/**
+ * Mutable ring-buffer slot. Instances are preallocated by {@link StockTickBus} and
+ * reused for every lap around the ring, so handlers must copy anything they keep.
+ */
+public final class StockTick {
+    String symbol;
+    float price;
+    long publishNanos;
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public float getPrice() {
+        return price;
+    }
+
+    /**
+     * System.nanoTime() at publication, for end-to-end latency measurements.
+     */
+    public long getPublishNanos() {
+        return publishNanos;
+    }
+}
@@ -0,0 +1,176 @@
+package com.headfirst.chapter2.observerPattern.notification.bus;
+
+import com.headfirst.chapter2.observerPattern.notification.observers.Observer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disruptor-style event bus for high-frequency stock ticks.
+ *
+ * Ticks are written into a preallocated ring of {@link StockTick} slots, so
+ * publishing does not allocate. There is a single publisher: {@link #publish}
+ * must always be called from the same thread. Every handler runs on its own
+ * thread, follows the publisher's cursor with its own sequence and processes
+ * everything available in one batch. The publisher never overtakes the slowest
+ * handler; when the ring is full it waits.
+ *
+ * Handlers are added before {@link #start()}, and ticks are published only after it.
+ */
+public class StockTickBus implements AutoCloseable {
+    private final StockTick[] ring;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final Sequence cursor = new Sequence(-1);
+    private final List<Consumer> consumers = new ArrayList<>();
+    // Set once by start() before running, so a publisher that sees running also sees every handler
+    private volatile Sequence[] gatingSequences = new Sequence[0];
+    private long cachedGatingSequence = -1;
+    private long nextSequence;
+    private volatile boolean running;
+
+    /**
+     * @param bufferSize   number of slots, a power of two
+     * @param waitStrategy how idle handlers and a blocked publisher wait
+     */
+    public StockTickBus(int bufferSize, WaitStrategy waitStrategy) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of two: " + bufferSize);
+        }
+        this.ring = new StockTick[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            ring[i] = new StockTick();
+        }
+        this.mask = bufferSize - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public synchronized void addHandler(TickHandler handler) {
+        if (running) {
+            throw new IllegalStateException("Handlers must be added before start()");
+        }
+        consumers.add(new Consumer(handler));
+    }
+
+    /**
+     * Convenience for delivering ticks to a plain {@link Observer}.
+     */
+    public void subscribe(Observer observer) {
+        addHandler(new ObserverTickHandler(observer));
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        Sequence[] sequences = new Sequence[consumers.size()];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = consumers.get(i).sequence;
+        }
+        gatingSequences = sequences;
+        running = true;
+        for (int i = 0; i < consumers.size(); i++) {
+            Consumer consumer = consumers.get(i);
+            Thread thread = new Thread(consumer, "tick-handler-" + i);
+            thread.setDaemon(true);
+            consumer.thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Publishes a tick. Single-writer: call from one thread only.
+     *
+     * @return the sequence of the tick
+     * @throws IllegalStateException if the bus is not started, since nothing would stop it overwriting unread ticks
+     */
+    public long publish(String symbol, float price) {
+        if (!running) {
+            throw new IllegalStateException("Ticks can only be published between start() and close()");
+        }
+        long sequence = nextSequence++;
+        long wrapPoint = sequence - ring.length;
+        // Wait until the slowest handler has left the slot we are about to reuse
+        if (wrapPoint > cachedGatingSequence) {
+            int attempt = 0;
+            long minimum;
+            while (wrapPoint > (minimum = minimumGatingSequence())) {
+                waitStrategy.idle(attempt++);
+            }
+            cachedGatingSequence = minimum;
+        }
+        StockTick tick = ring[(int) sequence & mask];
+        tick.symbol = symbol;
+        tick.price = price;
+        tick.publishNanos = System.nanoTime();
+        cursor.setRelease(sequence);
+        return sequence;
+    }
+
+    /**
+     * Waits until every handler has processed every published tick, then stops them.
+     */
+    @Override
+    public void close() {
+        long last = cursor.getAcquire();
+        int attempt = 0;
+        while (minimumGatingSequence() < last) {
+            waitStrategy.idle(attempt++);
+        }
+        running = false;
+        try {
+            for (Consumer consumer : consumers) {
+                if (consumer.thread != null) {
+                    consumer.thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long minimumGatingSequence() {
+        long minimum = cursor.getAcquire();
+        for (Sequence sequence : gatingSequences) {
+            minimum = Math.min(minimum, sequence.getAcquire());
+        }
+        return minimum;
+    }
+
+    private final class Consumer implements Runnable {
+        final TickHandler handler;
+        final Sequence sequence = new Sequence(-1);
+        Thread thread;
+
+        Consumer(TickHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            int attempt = 0;
+            while (true) {
+                long available = cursor.getAcquire();
+                if (available < next) {
+                    if (!running) {
+                        return;
+                    }
+                    waitStrategy.idle(attempt++);
+                    continue;
+                }
+                attempt = 0;
+                for (long s = next; s <= available; s++) {
+                    try {
+                        handler.onTick(ring[(int) s & mask], s, s == available);
+                    } catch (RuntimeException e) {
+                        System.err.println("Tick handler " + handler + " failed at sequence " + s + ": " + e);
+                    }
+                }
+                // One release per batch instead of per tick
+                sequence.setRelease(available);
+                next = available + 1;
+            }
+        }
+    }
+}
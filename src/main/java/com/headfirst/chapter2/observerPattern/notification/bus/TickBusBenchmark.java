@@ -0,0 +1,65 @@
+package com.headfirst.chapter2.observerPattern.notification.bus;
+
+import com.headfirst.chapter2.observerPattern.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures StockTickBus publish throughput and end-to-end latency percentiles
+ * (publish to handler) for an increasing number of handlers.
+ *
+ * Usage: TickBusBenchmark [ticks] [waitStrategy]
+ */
+public class TickBusBenchmark {
+    private static final String[] SYMBOLS = {"AAPL", "GOOGL", "MSFT", "AMZN", "NVDA", "META", "TSLA", "NFLX"};
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        WaitStrategy waitStrategy = args.length > 1 ? WaitStrategy.valueOf(args[1]) : WaitStrategy.YIELDING;
+
+        System.out.printf("%d ticks per run, %s, %d cores%n", ticks, waitStrategy, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-9s %14s %10s %10s %10s %10s%n", "handlers", "ticks/s", "p50 ns", "p99 ns", "p99.9 ns", "max ns");
+        for (int handlers = 1; handlers <= 4; handlers *= 2) {
+            run(ticks / 10, handlers, waitStrategy, false); // Warm up
+            run(ticks, handlers, waitStrategy, true);
+        }
+    }
+
+    private static void run(int ticks, int handlers, WaitStrategy waitStrategy, boolean print) {
+        StockTickBus bus = new StockTickBus(64 * 1024, waitStrategy);
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong checksum = new AtomicLong();
+        for (int h = 0; h < handlers; h++) {
+            boolean recordLatency = h == 0;
+            bus.addHandler(new TickHandler() {
+                private long sum;
+
+                @Override
+                public void onTick(StockTick tick, long sequence, boolean endOfBatch) {
+                    if (recordLatency) {
+                        latencies.record(System.nanoTime() - tick.getPublishNanos());
+                    }
+                    sum += (long) tick.getPrice();
+                    if (endOfBatch) {
+                        checksum.addAndGet(sum);
+                        sum = 0;
+                    }
+                }
+            });
+        }
+        bus.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            bus.publish(SYMBOLS[i & 7], i & 1023);
+        }
+        bus.close();
+        long elapsed = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf("%-9d %14.0f %10d %10d %10d %10d%n", handlers, ticks / (elapsed / 1e9),
+                    latencies.getPercentile(50), latencies.getPercentile(99), latencies.getPercentile(99.9),
+                    latencies.getMax());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.headfirst.chapter2.observerPattern.notification.bus;
+
+/**
+ * Consumer of a {@link StockTickBus}. Each handler runs on its own thread and
+ * receives ticks in batches: everything published since its last batch.
+ */
+public interface TickHandler {
+    /**
+     * @param tick       the slot holding the tick; only valid during this call
+     * @param sequence   position of the tick on the bus, starting at 0
+     * @param endOfBatch true for the last tick of the current batch, e.g. to flush
+     */
+    void onTick(StockTick tick, long sequence, boolean endOfBatch);
+}
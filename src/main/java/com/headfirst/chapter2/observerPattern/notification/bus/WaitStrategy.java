@@ -0,0 +1,51 @@
+package com.headfirst.chapter2.observerPattern.notification.bus;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a consumer (or the publisher, when the ring is full) waits for progress.
+ */
+public enum WaitStrategy {
+    /**
+     * Lowest latency; burns a core per waiting thread.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    /**
+     * Spins briefly, then yields the core to other threads.
+     */
+    YIELDING {
+        @Override
+        void idle(int attempt) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    /**
+     * Spins, yields, then parks; cheapest on CPU, highest wake-up latency.
+     */
+    SLEEPING {
+        @Override
+        void idle(int attempt) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else if (attempt < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+        }
+    };
+
+    /**
+     * @param attempt how many times the caller has already waited for the same condition
+     */
+    abstract void idle(int attempt);
+}
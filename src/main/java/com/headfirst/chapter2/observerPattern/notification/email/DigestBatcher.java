@@ -0,0 +1,200 @@
+package com.headfirst.chapter2.observerPattern.notification.email;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects price notifications per recipient into digests and hands them to a
+ * {@link NotificationSender} on a background thread.
+ *
+ * A recipient's digest is sent once it holds {@code maxBatchSize} notifications
+ * or its oldest notification is {@code maxDelayMillis} old, whichever comes first.
+ * Sends are capped at {@code maxSendsPerSecond} however fast ticks arrive: while
+ * the sender is throttled, newer prices overwrite older ones in the pending
+ * digests, so memory is bounded by recipients times symbols.
+ */
+public class DigestBatcher implements AutoCloseable {
+    private final NotificationSender sender;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long sendIntervalNanos;
+    // Insertion order is the order the digests were opened, so the head is always the oldest
+    private final Map<String, Digest> pending = new LinkedHashMap<>();
+    private final Queue<Digest> full = new ArrayDeque<>();
+    private final Thread flusher;
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder sends = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private long nextSendNanos;
+    private boolean closed;
+
+    public DigestBatcher(NotificationSender sender, int maxBatchSize, long maxDelayMillis, double maxSendsPerSecond) {
+        if (maxBatchSize <= 0 || maxDelayMillis < 0 || maxSendsPerSecond <= 0) {
+            throw new IllegalArgumentException("Batch size and send rate must be positive");
+        }
+        this.sender = sender;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.sendIntervalNanos = (long) (1e9 / maxSendsPerSecond);
+        this.nextSendNanos = System.nanoTime();
+        this.flusher = new Thread(this::run, "digest-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public synchronized void add(String recipient, String stockName, float price) {
+        if (closed) {
+            throw new IllegalStateException("Batcher is closed");
+        }
+        notifications.increment();
+        Digest digest = pending.get(recipient);
+        if (digest == null) {
+            digest = new Digest(recipient, System.nanoTime());
+            pending.put(recipient, digest);
+            notifyAll(); // The flusher may be waiting with nothing pending
+        }
+        if (digest.add(stockName, price) == maxBatchSize) {
+            full.add(digest);
+            notifyAll();
+        }
+    }
+
+    public long getNotificationCount() {
+        return notifications.sum();
+    }
+
+    public long getSendCount() {
+        return sends.sum();
+    }
+
+    public long getFailedSendCount() {
+        return failures.sum();
+    }
+
+    public synchronized int getPendingRecipients() {
+        return pending.size();
+    }
+
+    /**
+     * Sends every pending digest, still honoring the send rate, then stops the flusher.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                throttle();
+                Digest digest = nextDue();
+                if (digest == null) {
+                    return;
+                }
+                // Measured from the actual send, so time spent idle in nextDue() is not banked as a free slot
+                nextSendNanos = System.nanoTime() + sendIntervalNanos;
+                try {
+                    sender.send(digest.recipient, digest.subject(), digest.body());
+                    sends.increment();
+                } catch (IOException | RuntimeException e) {
+                    failures.increment();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void throttle() throws InterruptedException {
+        long wait = nextSendNanos - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Waits for a full or expired digest and removes it from the pending set.
+     *
+     * @return null once closed and nothing is left to send
+     */
+    private synchronized Digest nextDue() throws InterruptedException {
+        while (true) {
+            Digest digest = full.poll();
+            if (digest != null && pending.remove(digest.recipient, digest)) {
+                return digest;
+            }
+            if (digest == null) {
+                Iterator<Digest> oldest = pending.values().iterator();
+                if (!oldest.hasNext()) {
+                    if (closed) {
+                        return null;
+                    }
+                    wait();
+                    continue;
+                }
+                digest = oldest.next();
+                long remaining = digest.openedNanos + maxDelayNanos - System.nanoTime();
+                if (remaining <= 0 || closed) {
+                    oldest.remove();
+                    return digest;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+    }
+
+    /**
+     * Latest price per symbol for one recipient, in the order the symbols first changed.
+     */
+    private static final class Digest {
+        final String recipient;
+        final long openedNanos;
+        final Map<String, SymbolUpdates> prices = new LinkedHashMap<>();
+        int count;
+
+        Digest(String recipient, long openedNanos) {
+            this.recipient = recipient;
+            this.openedNanos = openedNanos;
+        }
+
+        int add(String stockName, float price) {
+            SymbolUpdates latest = prices.computeIfAbsent(stockName, name -> new SymbolUpdates());
+            latest.price = price;
+            latest.updates++;
+            return ++count;
+        }
+
+        String subject() {
+            return "Stock digest: " + prices.size() + " symbols, " + count + " updates";
+        }
+
+        String body() {
+            StringBuilder body = new StringBuilder();
+            for (Map.Entry<String, SymbolUpdates> entry : prices.entrySet()) {
+                SymbolUpdates latest = entry.getValue();
+                body.append(entry.getKey()).append(" is now $").append(latest.price)
+                        .append(" (").append(latest.updates).append(" updates)\n");
+            }
+            return body.toString();
+        }
+    }
+
+    private static final class SymbolUpdates {
+        float price;
+        int updates;
+    }
+}
@@ -0,0 +1,74 @@
+package com.headfirst.chapter2.observerPattern.notification.email;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a mail relay: records every message instead of sending it,
+ * optionally taking a fixed time per send like a real SMTP round trip.
+ */
+public class InMemoryNotificationSender implements NotificationSender {
+    private final long sendMillis;
+    private final List<Message> sent = new ArrayList<>();
+
+    public InMemoryNotificationSender() {
+        this(0);
+    }
+
+    /**
+     * @param sendMillis simulated latency of each send
+     */
+    public InMemoryNotificationSender(long sendMillis) {
+        this.sendMillis = sendMillis;
+    }
+
+    @Override
+    public void send(String recipient, String subject, String body) {
+        if (sendMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(sendMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (sent) {
+            sent.add(new Message(recipient, subject, body));
+        }
+    }
+
+    public List<Message> getSentMessages() {
+        synchronized (sent) {
+            return new ArrayList<>(sent);
+        }
+    }
+
+    public static final class Message {
+        private final String recipient;
+        private final String subject;
+        private final String body;
+
+        Message(String recipient, String subject, String body) {
+            this.recipient = recipient;
+            this.subject = subject;
+            this.body = body;
+        }
+
+        public String getRecipient() {
+            return recipient;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        @Override
+        public String toString() {
+            return "To: " + recipient + "\nSubject: " + subject + "\n\n" + body;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.headfirst.chapter2.observerPattern.notification.email;
+
+import java.io.IOException;
+
+/**
+ * Delivers one message to one recipient, e.g. through an SMTP relay.
+ */
+public interface NotificationSender {
+    void send(String recipient, String subject, String body) throws IOException;
+}
@@ -0,0 +1,102 @@
+package com.headfirst.chapter2.observerPattern.notification.observers;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a slow observer so that it only ever receives the latest price per symbol.
+ * While the observer is busy, newer prices overwrite older undelivered ones; once
+ * it is free it gets the freshest value of each symbol that changed, instead of
+ * replaying the backlog. Memory is bounded by the number of symbols, not the tick rate.
+ *
+ * Updates are delivered on the executor, one at a time and in the order in which
+ * the symbols first became pending.
+ */
+public class ConflatingObserver implements Observer {
+    private static final int MAX_BATCH = 256;
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "conflating-observer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Observer delegate;
+    private final Executor executor;
+    private final Map<String, Float> latestPrices = new ConcurrentHashMap<>();
+    private final Queue<String> pendingSymbols = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+
+    public ConflatingObserver(Observer delegate) {
+        this(delegate, DEFAULT_EXECUTOR);
+    }
+
+    public ConflatingObserver(Observer delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public void update(String stockName, float price) {
+        if (latestPrices.put(stockName, price) == null) {
+            pendingSymbols.add(stockName);
+        } else {
+            conflated.increment(); // An undelivered price was replaced
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Number of symbols with a price waiting for delivery.
+     */
+    public int getPendingCount() {
+        return latestPrices.size();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * Number of prices that were overwritten before they could be delivered.
+     */
+    public long getConflatedCount() {
+        return conflated.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "conflating(" + delegate + ")";
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_BATCH; i++) {
+            String symbol = pendingSymbols.poll();
+            if (symbol == null) {
+                break;
+            }
+            // Removing the price re-arms the symbol: the next tick queues it again
+            Float price = latestPrices.remove(symbol);
+            try {
+                delegate.update(symbol, price);
+                delivered.increment();
+            } catch (RuntimeException e) {
+                System.err.println("Observer " + delegate + " failed: " + e);
+            }
+        }
+        scheduled.set(false);
+        if (!pendingSymbols.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+}
@@ -1,11 +1,36 @@
 package com.headfirst.chapter2.observerPattern.notification.observers;
 
+import com.headfirst.chapter2.observerPattern.notification.email.DigestBatcher;
+
 /**
  * EmailObserver sends email notifications when the stock price changes.
+ *
+ * By default every change is printed on its own. In digest mode the changes are
+ * handed to a {@link DigestBatcher}, which mails the recipient one summary per
+ * batch window instead of one message per tick.
  */
 public class EmailObserver implements Observer {
+    private final String recipient;
+    private final DigestBatcher batcher;
+
+    public EmailObserver() {
+        this(null, null);
+    }
+
+    /**
+     * Digest mode: notifications for the recipient are batched by the batcher.
+     */
+    public EmailObserver(String recipient, DigestBatcher batcher) {
+        this.recipient = recipient;
+        this.batcher = batcher;
+    }
+
     @Override
     public void update(String stockName, float price) {
-        System.out.println("Email Notification - " + stockName + " is now $" + price);
+        if (batcher != null) {
+            batcher.add(recipient, stockName, price);
+        } else {
+            System.out.println("Email Notification - " + stockName + " is now $" + price);
+        }
     }
-}
\ No newline at end of file
+}
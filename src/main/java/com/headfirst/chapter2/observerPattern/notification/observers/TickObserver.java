@@ -0,0 +1,9 @@
+package com.headfirst.chapter2.observerPattern.notification.observers;
+
+/**
+ * Fast-path observer that receives interned symbol IDs instead of Strings.
+ * Use the subject's SymbolTable to map IDs to names when needed.
+ */
+public interface TickObserver {
+    void update(int symbolId, float price);
+}
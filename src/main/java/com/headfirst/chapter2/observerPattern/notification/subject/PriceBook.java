@@ -0,0 +1,55 @@
+package com.headfirst.chapter2.observerPattern.notification.subject;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Latest price per symbol ID, stored as raw float bits in primitive chunks of
+ * 16K entries. Chunks are allocated as IDs grow and never copied, so writes are
+ * never lost to a resize, and millions of instruments cost 4 bytes each.
+ */
+class PriceBook {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int NO_PRICE = Float.floatToRawIntBits(Float.NaN);
+
+    private volatile AtomicIntegerArray[] chunks = new AtomicIntegerArray[0];
+
+    void set(int symbolId, float price) {
+        chunk(symbolId).lazySet(symbolId & (CHUNK_SIZE - 1), Float.floatToRawIntBits(price));
+    }
+
+    /**
+     * @return the latest price, or NaN if none was published
+     */
+    float get(int symbolId) {
+        AtomicIntegerArray[] current = chunks;
+        int index = symbolId >>> CHUNK_BITS;
+        if (index >= current.length) {
+            return Float.NaN;
+        }
+        return Float.intBitsToFloat(current[index].get(symbolId & (CHUNK_SIZE - 1)));
+    }
+
+    private AtomicIntegerArray chunk(int symbolId) {
+        AtomicIntegerArray[] current = chunks;
+        int index = symbolId >>> CHUNK_BITS;
+        return index < current.length ? current[index] : grow(index);
+    }
+
+    private synchronized AtomicIntegerArray grow(int index) {
+        AtomicIntegerArray[] current = chunks;
+        if (index >= current.length) {
+            AtomicIntegerArray[] grown = Arrays.copyOf(current, index + 1);
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = new AtomicIntegerArray(CHUNK_SIZE);
+                for (int j = 0; j < CHUNK_SIZE; j++) {
+                    grown[i].lazySet(j, NO_PRICE);
+                }
+            }
+            chunks = grown;
+            current = grown;
+        }
+        return current[index];
+    }
+}
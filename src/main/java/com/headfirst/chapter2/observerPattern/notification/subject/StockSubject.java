@@ -1,42 +1,343 @@
 package com.headfirst.chapter2.observerPattern.notification.subject;
 
+import com.headfirst.chapter2.observerPattern.metrics.DispatchMonitor;
+import com.headfirst.chapter2.observerPattern.metrics.ObserverStats;
 import com.headfirst.chapter2.observerPattern.notification.observers.Observer;
+import com.headfirst.chapter2.observerPattern.notification.observers.TickObserver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * StockSubject acts as the concrete subject, managing stock price updates.
+ *
+ * Observers subscribe to a topic: an exact symbol ("AAPL"), a prefix ("AA*") or
+ * everything ("*", which is what {@link #registerObserver(Observer)} does).
+ * Subscriptions are indexed in a character trie, so a tick only walks the
+ * symbol's characters and touches the observers interested in it, however many
+ * other subscribers there are. An observer subscribed through several matching
+ * topics is notified once per subscription.
+ *
+ * Symbols are interned in a {@link SymbolTable}. Publishers that already hold
+ * the int ID can call {@link #setStockData(int, float)}, which stores the price
+ * in a primitive array and notifies {@link TickObserver}s without allocating.
+ * String observers on that path receive the interned name; the trie walk that
+ * finds them is skipped while none are registered, so a subject with only
+ * TickObservers delivers a tick without hashing either.
+ *
+ * Observers may be registered and removed from any thread, even during a
+ * notification: notifyObservers() iterates over snapshots without locking.
+ * Each observer's topics are indexed, so removing it only visits the trie nodes
+ * it subscribed to, and nodes left without observers or children are pruned.
  */
 public class StockSubject implements Subject {
-    private final List<Observer> observers;
-    private String stockName;
-    private float stockPrice;
+    public static final String WILDCARD = "*";
+    private static final long NO_TICK = -1L;
+
+    private final Node root = new Node();
+    // Guards trie changes and the topic index; dispatch reads the trie without it
+    private final Object topicLock = new Object();
+    // One entry per subscription, so an observer subscribed twice to a topic is listed twice
+    private final Map<Observer, List<String>> topicsByObserver = new ConcurrentHashMap<>();
+    private final SymbolTable symbols;
+    private final PriceBook prices = new PriceBook();
+    private volatile TickObserver[] allSymbolTickObservers = new TickObserver[0];
+    // Written under the lock, read without it
+    private volatile AtomicReferenceArray<TickObserver[]> tickObserversBySymbol = new AtomicReferenceArray<>(0);
+    // Symbol ID in the high half, price bits in the low half, so the pair is read atomically
+    private volatile long lastTick = NO_TICK;
+    private volatile DispatchMonitor monitor;
 
     public StockSubject() {
-        observers = new ArrayList<>();
+        this(new SymbolTable());
+    }
+
+    /**
+     * @param symbols table shared with the publishers, so IDs they hold match this subject's
+     */
+    public StockSubject(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * Times every update from now on and applies the monitor's SLO; null turns monitoring off.
+     */
+    public void setDispatchMonitor(DispatchMonitor monitor) {
+        this.monitor = monitor;
     }
 
     @Override
     public void registerObserver(Observer o) {
-        observers.add(o);
+        registerObserver(WILDCARD, o);
+    }
+
+    /**
+     * @param topic an exact symbol, a prefix ending in "*", or "*" for every symbol
+     * @param o     the observer
+     */
+    public void registerObserver(String topic, Observer o) {
+        boolean prefix = topic.endsWith(WILDCARD);
+        String path = prefix ? topic.substring(0, topic.length() - 1) : topic;
+        synchronized (topicLock) {
+            Node node = root;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.children.computeIfAbsent(path.charAt(i), c -> new Node());
+            }
+            (prefix ? node.prefixObservers : node.exactObservers).add(o);
+            topicsByObserver.computeIfAbsent(o, k -> new ArrayList<>()).add(topic);
+        }
     }
 
+    /**
+     * Removes the observer from every topic it subscribed to.
+     */
     @Override
     public void removeObserver(Observer o) {
-        observers.remove(o);
+        synchronized (topicLock) {
+            List<String> topics = topicsByObserver.remove(o);
+            if (topics != null) {
+                for (String topic : topics) {
+                    unsubscribe(topic, o);
+                }
+            }
+        }
+        DispatchMonitor current = monitor;
+        if (current != null) {
+            current.forget(o);
+        }
+    }
+
+    /**
+     * Removes a single subscription.
+     */
+    public void removeObserver(String topic, Observer o) {
+        synchronized (topicLock) {
+            List<String> topics = topicsByObserver.get(o);
+            if (topics == null || !topics.remove(topic)) {
+                return;
+            }
+            if (topics.isEmpty()) {
+                topicsByObserver.remove(o);
+            }
+            unsubscribe(topic, o);
+        }
+    }
+
+    /**
+     * Subscribes to every symbol on the int path.
+     */
+    public synchronized void registerTickObserver(TickObserver o) {
+        allSymbolTickObservers = append(allSymbolTickObservers, o);
+    }
+
+    public synchronized void registerTickObserver(int symbolId, TickObserver o) {
+        AtomicReferenceArray<TickObserver[]> bySymbol = tickObserversBySymbol;
+        if (symbolId >= bySymbol.length()) {
+            AtomicReferenceArray<TickObserver[]> grown =
+                    new AtomicReferenceArray<>(Math.max(symbolId + 1, bySymbol.length() * 2));
+            for (int i = 0; i < bySymbol.length(); i++) {
+                grown.set(i, bySymbol.get(i));
+            }
+            tickObserversBySymbol = grown;
+            bySymbol = grown;
+        }
+        TickObserver[] current = bySymbol.get(symbolId);
+        bySymbol.set(symbolId, append(current != null ? current : new TickObserver[0], o));
+    }
+
+    /**
+     * Removes the tick observer from every symbol it subscribed to.
+     */
+    public synchronized void removeTickObserver(TickObserver o) {
+        allSymbolTickObservers = without(allSymbolTickObservers, o);
+        AtomicReferenceArray<TickObserver[]> bySymbol = tickObserversBySymbol;
+        for (int i = 0; i < bySymbol.length(); i++) {
+            TickObserver[] current = bySymbol.get(i);
+            if (current != null) {
+                bySymbol.set(i, without(current, o));
+            }
+        }
+        DispatchMonitor current = monitor;
+        if (current != null) {
+            current.forget(o);
+        }
+    }
+
+    public synchronized void removeTickObserver(int symbolId, TickObserver o) {
+        AtomicReferenceArray<TickObserver[]> bySymbol = tickObserversBySymbol;
+        if (symbolId < bySymbol.length() && bySymbol.get(symbolId) != null) {
+            bySymbol.set(symbolId, without(bySymbol.get(symbolId), o));
+        }
     }
 
     @Override
     public void notifyObservers() {
-        for (Observer observer : observers) {
-            observer.update(stockName, stockPrice);
+        long tick = lastTick;
+        if (tick != NO_TICK) {
+            dispatch((int) (tick >>> 32), Float.intBitsToFloat((int) tick));
         }
     }
 
+    /**
+     * Safe to call from several publisher threads: each call dispatches its own
+     * tick rather than whatever the shared fields hold by then.
+     */
     public void setStockData(String stockName, float stockPrice) {
-        this.stockName = stockName;
-        this.stockPrice = stockPrice;
-        notifyObservers();
+        setStockData(symbols.intern(stockName), stockPrice);
+    }
+
+    /**
+     * Fast path for publishers that hold interned IDs from {@link #getSymbolTable()}.
+     *
+     * @throws IllegalArgumentException if the ID was not interned; nothing is stored or notified
+     */
+    public void setStockData(int symbolId, float stockPrice) {
+        if (!symbols.contains(symbolId)) {
+            throw new IllegalArgumentException("Unknown symbol ID: " + symbolId);
+        }
+        prices.set(symbolId, stockPrice);
+        lastTick = ((long) symbolId << 32) | (Float.floatToRawIntBits(stockPrice) & 0xFFFFFFFFL);
+        dispatch(symbolId, stockPrice);
+    }
+
+    /**
+     * @return the latest price published for the symbol, or NaN if there is none
+     */
+    public float getLatestPrice(int symbolId) {
+        return prices.get(symbolId);
+    }
+
+    public float getLatestPrice(String stockName) {
+        int symbolId = symbols.lookup(stockName);
+        return symbolId < 0 ? Float.NaN : prices.get(symbolId);
+    }
+
+    private void dispatch(int symbolId, float price) {
+        deliver(allSymbolTickObservers, symbolId, price);
+        AtomicReferenceArray<TickObserver[]> bySymbol = tickObserversBySymbol;
+        if (symbolId < bySymbol.length()) {
+            TickObserver[] observers = bySymbol.get(symbolId);
+            if (observers != null) {
+                deliver(observers, symbolId, price);
+            }
+        }
+        if (!topicsByObserver.isEmpty()) {
+            dispatch(symbols.name(symbolId), price);
+        }
+    }
+
+    private void dispatch(String name, float price) {
+        Node node = root;
+        deliver(node.prefixObservers, name, price);
+        for (int i = 0; i < name.length() && node != null; i++) {
+            node = node.children.get(name.charAt(i));
+            if (node != null) {
+                deliver(node.prefixObservers, name, price);
+            }
+        }
+        if (node != null) {
+            deliver(node.exactObservers, name, price);
+        }
+    }
+
+    private void deliver(TickObserver[] observers, int symbolId, float price) {
+        DispatchMonitor current = monitor;
+        for (TickObserver observer : observers) {
+            if (current == null) {
+                observer.update(symbolId, price);
+                continue;
+            }
+            ObserverStats stats = current.statsFor(observer);
+            if (!stats.isQuarantined()) {
+                long start = System.nanoTime();
+                try {
+                    observer.update(symbolId, price);
+                } finally {
+                    current.record(stats, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    private void deliver(List<Observer> observers, String name, float price) {
+        DispatchMonitor current = monitor;
+        for (Observer observer : observers) {
+            if (current == null) {
+                observer.update(name, price);
+                continue;
+            }
+            ObserverStats stats = current.statsFor(observer);
+            if (!stats.isQuarantined()) {
+                long start = System.nanoTime();
+                try {
+                    observer.update(name, price);
+                } finally {
+                    current.record(stats, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    private static TickObserver[] append(TickObserver[] observers, TickObserver o) {
+        TickObserver[] grown = Arrays.copyOf(observers, observers.length + 1);
+        grown[observers.length] = o;
+        return grown;
+    }
+
+    private static TickObserver[] without(TickObserver[] observers, TickObserver o) {
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i] == o) {
+                TickObserver[] shrunk = new TickObserver[observers.length - 1];
+                System.arraycopy(observers, 0, shrunk, 0, i);
+                System.arraycopy(observers, i + 1, shrunk, i, shrunk.length - i);
+                return shrunk;
+            }
+        }
+        return observers;
+    }
+
+    /**
+     * Removes one subscription from the trie and prunes the nodes it leaves empty.
+     * Called under topicLock.
+     */
+    private void unsubscribe(String topic, Observer o) {
+        boolean prefix = topic.endsWith(WILDCARD);
+        String path = prefix ? topic.substring(0, topic.length() - 1) : topic;
+        Node[] chain = new Node[path.length() + 1];
+        chain[0] = root;
+        for (int i = 0; i < path.length(); i++) {
+            chain[i + 1] = chain[i].children.get(path.charAt(i));
+            if (chain[i + 1] == null) {
+                return;
+            }
+        }
+        Node node = chain[path.length()];
+        (prefix ? node.prefixObservers : node.exactObservers).remove(o);
+        for (int i = path.length(); i > 0 && chain[i].isEmpty(); i--) {
+            chain[i - 1].children.remove(path.charAt(i - 1), chain[i]);
+        }
+    }
+
+    /**
+     * Trie node for one symbol prefix. Prefix observers match every symbol below
+     * the node, exact observers only the symbol ending here.
+     */
+    private static final class Node {
+        final Map<Character, Node> children = new ConcurrentHashMap<>();
+        final List<Observer> prefixObservers = new CopyOnWriteArrayList<>();
+        final List<Observer> exactObservers = new CopyOnWriteArrayList<>();
+
+        boolean isEmpty() {
+            return children.isEmpty() && prefixObservers.isEmpty() && exactObservers.isEmpty();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package com.headfirst.chapter2.observerPattern.notification.subject;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns ticker symbols to dense int IDs (0, 1, 2, ...), so hot paths can pass
+ * and index ticks by int instead of hashing and comparing Strings. IDs are never
+ * reused; the name of an ID is the interned String, so mapping back does not allocate.
+ */
+public class SymbolTable {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private int size;
+
+    /**
+     * @return the ID of the symbol, assigning the next free one if it is new
+     */
+    public int intern(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : add(symbol);
+    }
+
+    /**
+     * @return the ID of the symbol, or -1 if it was never interned
+     */
+    public int lookup(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return whether the ID was handed out by {@link #intern(String)}
+     */
+    public boolean contains(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length && current[id] != null;
+    }
+
+    public String name(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Unknown symbol ID: " + id);
+        }
+        return names[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String symbol) {
+        Integer existing = ids.get(symbol);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[id] = symbol;
+        // The map put publishes the name to any thread that later sees the ID
+        ids.put(symbol, id);
+        return id;
+    }
+}
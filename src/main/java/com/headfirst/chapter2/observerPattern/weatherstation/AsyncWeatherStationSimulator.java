@@ -0,0 +1,37 @@
+package com.headfirst.chapter2.observerPattern.weatherstation;
+
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.CurrentConditionsDisplay;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.Observer;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.OverflowPolicy;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+/**
+ * Shows that a slow display registered in async mode no longer stalls the sensor thread.
+ */
+public class AsyncWeatherStationSimulator {
+    public static void main(String[] args) throws InterruptedException {
+        WeatherData weatherData = new WeatherData();
+
+        // A display that takes 100 ms per update
+        Observer slowDisplay = (temperature, humidity, pressure) -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            System.out.println("Slow display: " + temperature + "°C");
+        };
+        weatherData.registerObserver(slowDisplay, OverflowPolicy.CONFLATE, 1);
+        weatherData.registerObserver(new CurrentConditionsDisplay(), OverflowPolicy.BLOCK, 16);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            weatherData.setMeasurements(20.0f + i, 60.0f, 1013.0f);
+        }
+        System.out.printf("Sensor thread published 10 readings in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        // The slow display skips to the latest reading instead of replaying all of them
+        Thread.sleep(500);
+        weatherData.removeObserver(slowDisplay);
+    }
+}
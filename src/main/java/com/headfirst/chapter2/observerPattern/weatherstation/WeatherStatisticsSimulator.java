@@ -0,0 +1,48 @@
+package com.headfirst.chapter2.observerPattern.weatherstation;
+
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.WeatherStatistics;
+import com.headfirst.chapter2.observerPattern.weatherstation.subject.WeatherData;
+
+import java.util.Random;
+
+/**
+ * Feeds an hour of per-second readings from many stations into WeatherStatistics
+ * observers, on a simulated clock, and reports the cost per reading and the
+ * windowed statistics of one station.
+ *
+ * Usage: WeatherStatisticsSimulator [stations]
+ */
+public class WeatherStatisticsSimulator {
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    public static void main(String[] args) {
+        int stationCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long[] clock = {0};
+        Random random = new Random(42);
+
+        WeatherData[] stations = new WeatherData[stationCount];
+        WeatherStatistics[] statistics = new WeatherStatistics[stationCount];
+        for (int i = 0; i < stationCount; i++) {
+            stations[i] = new WeatherData();
+            statistics[i] = new WeatherStatistics(() -> clock[0], 3600, MINUTE, HOUR);
+            stations[i].registerObserver(statistics[i]);
+        }
+
+        long start = System.nanoTime();
+        for (int second = 0; second < 3600; second++) {
+            clock[0] = second * 1000L;
+            for (WeatherData station : stations) {
+                float temperature = 15 + 10 * (float) Math.sin(second / 600.0) + (float) random.nextGaussian();
+                station.setMeasurements(temperature, 60 + 5 * random.nextFloat(), 1013 + random.nextFloat());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long readings = 3600L * stationCount;
+        System.out.printf("%d stations, %d readings in %d ms (%.0f ns per reading)%n",
+                stationCount, readings, elapsed / 1_000_000, (double) elapsed / readings);
+
+        System.out.println("Station 0:");
+        statistics[0].display();
+    }
+}
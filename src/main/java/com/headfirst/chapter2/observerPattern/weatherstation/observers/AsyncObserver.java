@@ -0,0 +1,160 @@
+package com.headfirst.chapter2.observerPattern.weatherstation.observers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wraps an observer so that updates are queued and delivered on a worker thread.
+ * Every AsyncObserver has its own bounded queue, so a slow observer neither
+ * stalls the publishing thread nor the observers behind it; what happens when
+ * the queue is full is decided by its {@link OverflowPolicy}.
+ *
+ * At most one drain task runs per observer, so the delegate still sees the
+ * updates one at a time and in order.
+ */
+public class AsyncObserver implements Observer {
+    private static final int MAX_BATCH = 64;
+
+    private final Observer delegate;
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final Executor executor;
+    private final ArrayDeque<Measurement> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicLong dropped = new AtomicLong();
+    private boolean scheduled;
+    private boolean closed;
+
+    /**
+     * @param delegate the observer to deliver to
+     * @param policy   what to do when the queue is full
+     * @param capacity maximum number of queued measurements (ignored by CONFLATE)
+     * @param executor runs the drain tasks
+     */
+    public AsyncObserver(Observer delegate, OverflowPolicy policy, int capacity, Executor executor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.capacity = policy == OverflowPolicy.CONFLATE ? 1 : capacity;
+        this.executor = executor;
+    }
+
+    @Override
+    public void update(float temperature, float humidity, float pressure) {
+        Measurement measurement = new Measurement(temperature, humidity, pressure);
+        boolean schedule;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (queue.size() >= capacity) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    while (queue.size() >= capacity && !closed) {
+                        notFull.awaitUninterruptibly();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                } else {
+                    queue.pollFirst();
+                    dropped.incrementAndGet();
+                }
+            }
+            queue.addLast(measurement);
+            schedule = !scheduled;
+            scheduled = true;
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Stops delivery; queued measurements are discarded and blocked publishers released.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Observer getDelegate() {
+        return delegate;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "async(" + delegate + ")";
+    }
+
+    /**
+     * Number of measurements discarded by DROP_OLDEST or CONFLATE.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<Measurement> batch = new ArrayList<>(Math.min(capacity, MAX_BATCH));
+        lock.lock();
+        try {
+            while (batch.size() < MAX_BATCH && !queue.isEmpty()) {
+                batch.add(queue.pollFirst());
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Measurement measurement : batch) {
+            try {
+                delegate.update(measurement.getTemperature(), measurement.getHumidity(), measurement.getPressure());
+            } catch (RuntimeException e) {
+                // A failing observer must not take the worker down or skip its later updates
+                System.err.println("Observer " + delegate + " failed: " + e);
+            }
+        }
+
+        boolean reschedule;
+        lock.lock();
+        try {
+            reschedule = !queue.isEmpty() && !closed;
+            scheduled = reschedule;
+        } finally {
+            lock.unlock();
+        }
+        if (reschedule) {
+            // Yield the worker between batches so one busy observer cannot hog it
+            executor.execute(this::drain);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.headfirst.chapter2.observerPattern.weatherstation.observers;
+
+/**
+ * Immutable snapshot of one set of weather readings.
+ */
+public final class Measurement {
+    private final float temperature;
+    private final float humidity;
+    private final float pressure;
+
+    public Measurement(float temperature, float humidity, float pressure) {
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.pressure = pressure;
+    }
+
+    public float getTemperature() {
+        return temperature;
+    }
+
+    public float getHumidity() {
+        return humidity;
+    }
+
+    public float getPressure() {
+        return pressure;
+    }
+
+    @Override
+    public String toString() {
+        return "Measurement{temperature=" + temperature + ", humidity=" + humidity + ", pressure=" + pressure + "}";
+    }
+}
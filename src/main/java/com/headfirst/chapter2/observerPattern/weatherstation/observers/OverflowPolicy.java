@@ -0,0 +1,19 @@
+package com.headfirst.chapter2.observerPattern.weatherstation.observers;
+
+/**
+ * What an {@link AsyncObserver} does with a new measurement when its queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * The publishing thread waits until the observer has caught up.
+     */
+    BLOCK,
+    /**
+     * The oldest queued measurement is discarded to make room.
+     */
+    DROP_OLDEST,
+    /**
+     * Only the latest measurement is kept; the queue never holds more than one.
+     */
+    CONFLATE
+}
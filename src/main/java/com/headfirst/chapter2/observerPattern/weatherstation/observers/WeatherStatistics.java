@@ -0,0 +1,180 @@
+package com.headfirst.chapter2.observerPattern.weatherstation.observers;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a history of readings and statistics over sliding time windows.
+ *
+ * The history is columnar: timestamps, temperature, humidity and pressure each
+ * live in their own primitive ring buffer, with no object per reading. Every
+ * window keeps running min/max/avg and a percentile histogram per metric, which
+ * are updated in O(1) (amortized) as readings enter and leave the window, so
+ * queries never rescan the history. A window holds at most {@code capacity}
+ * readings; older ones are evicted when the ring wraps.
+ *
+ * One instance per station is cheap enough to keep thousands: the columns cost
+ * 20 bytes per reading, and each window adds two deques and a histogram per metric.
+ */
+public class WeatherStatistics implements Observer {
+    public enum Metric {
+        TEMPERATURE(-90f, 60f, 0.1f),
+        HUMIDITY(0f, 100f, 0.1f),
+        PRESSURE(850f, 1100f, 0.1f);
+
+        private final float lowest;
+        private final float resolution;
+        private final int bucketCount;
+
+        Metric(float lowest, float highest, float resolution) {
+            this.lowest = lowest;
+            this.resolution = resolution;
+            this.bucketCount = Math.round((highest - lowest) / resolution) + 1;
+        }
+
+        int bucketCount() {
+            return bucketCount;
+        }
+
+        // Out-of-range readings are clamped into the first or last bucket
+        int bucketOf(float value) {
+            int bucket = (int) ((value - lowest) / resolution);
+            return Math.max(0, Math.min(bucketCount - 1, bucket));
+        }
+
+        float midpointOf(int bucket) {
+            return lowest + (bucket + 0.5f) * resolution;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final int capacity;
+    private final long[] timestamps;
+    private final float[][] columns = new float[Metric.values().length][];
+    private final long[] windowMillis;
+    private final long[] windowStart;
+    private final WindowAggregate[][] aggregates;
+    private long next;
+
+    /**
+     * @param capacity     number of readings kept in the history
+     * @param windowMillis the sliding windows to maintain, e.g. 60_000 and 3_600_000
+     */
+    public WeatherStatistics(int capacity, long... windowMillis) {
+        this(System::currentTimeMillis, capacity, windowMillis);
+    }
+
+    /**
+     * @param clock timestamps readings delivered through {@link #update}
+     */
+    public WeatherStatistics(LongSupplier clock, int capacity, long... windowMillis) {
+        if (capacity <= 0 || windowMillis.length == 0) {
+            throw new IllegalArgumentException("Capacity and at least one window are required");
+        }
+        this.clock = clock;
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        for (Metric metric : Metric.values()) {
+            columns[metric.ordinal()] = new float[capacity];
+        }
+        this.windowMillis = windowMillis.clone();
+        this.windowStart = new long[windowMillis.length];
+        this.aggregates = new WindowAggregate[windowMillis.length][Metric.values().length];
+        for (int w = 0; w < windowMillis.length; w++) {
+            for (Metric metric : Metric.values()) {
+                aggregates[w][metric.ordinal()] = new WindowAggregate(columns[metric.ordinal()], metric);
+            }
+        }
+    }
+
+    @Override
+    public void update(float temperature, float humidity, float pressure) {
+        record(clock.getAsLong(), temperature, humidity, pressure);
+    }
+
+    /**
+     * Appends a reading. Timestamps must not go backwards.
+     */
+    public synchronized void record(long timestampMillis, float temperature, float humidity, float pressure) {
+        // Evict the slot about to be overwritten from any window still holding it
+        for (int w = 0; w < windowMillis.length; w++) {
+            if (next - windowStart[w] == capacity) {
+                evictOldest(w);
+            }
+        }
+        int position = (int) (next % capacity);
+        timestamps[position] = timestampMillis;
+        columns[Metric.TEMPERATURE.ordinal()][position] = temperature;
+        columns[Metric.HUMIDITY.ordinal()][position] = humidity;
+        columns[Metric.PRESSURE.ordinal()][position] = pressure;
+        next++;
+        for (int w = 0; w < windowMillis.length; w++) {
+            for (WindowAggregate aggregate : aggregates[w]) {
+                aggregate.add(position);
+            }
+        }
+        expire(timestampMillis);
+    }
+
+    public WindowSummary getSummary(Metric metric, long windowMillis) {
+        return getSummary(metric, windowMillis, clock.getAsLong());
+    }
+
+    /**
+     * @param nowMillis the time the window ends at; readings older than {@code nowMillis - windowMillis} are dropped
+     */
+    public synchronized WindowSummary getSummary(Metric metric, long windowMillis, long nowMillis) {
+        expire(nowMillis);
+        WindowAggregate aggregate = aggregates[windowIndex(windowMillis)][metric.ordinal()];
+        return new WindowSummary(windowMillis, aggregate.count(), aggregate.min(), aggregate.max(),
+                aggregate.average(), aggregate.percentile(50), aggregate.percentile(95), aggregate.percentile(99));
+    }
+
+    public synchronized float getPercentile(Metric metric, long windowMillis, double percentile) {
+        expire(clock.getAsLong());
+        return aggregates[windowIndex(windowMillis)][metric.ordinal()].percentile(percentile);
+    }
+
+    /**
+     * @return the number of readings in the history, up to its capacity
+     */
+    public synchronized int size() {
+        return (int) Math.min(next, capacity);
+    }
+
+    public void display() {
+        long now = clock.getAsLong();
+        for (long window : windowMillis) {
+            System.out.println("Last " + window / 1000 + "s:");
+            for (Metric metric : Metric.values()) {
+                System.out.println("  " + metric + ": " + getSummary(metric, window, now));
+            }
+        }
+    }
+
+    private void expire(long nowMillis) {
+        for (int w = 0; w < windowMillis.length; w++) {
+            long cutoff = nowMillis - windowMillis[w];
+            while (windowStart[w] < next && timestamps[(int) (windowStart[w] % capacity)] <= cutoff) {
+                evictOldest(w);
+            }
+        }
+    }
+
+    private void evictOldest(int w) {
+        int position = (int) (windowStart[w] % capacity);
+        for (WindowAggregate aggregate : aggregates[w]) {
+            aggregate.evict(position);
+        }
+        windowStart[w]++;
+    }
+
+    private int windowIndex(long window) {
+        for (int w = 0; w < windowMillis.length; w++) {
+            if (windowMillis[w] == window) {
+                return w;
+            }
+        }
+        throw new IllegalArgumentException("Window not tracked: " + window + "ms, tracked: " + Arrays.toString(windowMillis));
+    }
+}
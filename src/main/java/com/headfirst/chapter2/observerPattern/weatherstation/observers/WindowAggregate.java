@@ -0,0 +1,101 @@
+package com.headfirst.chapter2.observerPattern.weatherstation.observers;
+
+/**
+ * Running aggregates of one metric over one sliding window. Readings live in the
+ * owner's column; this class only tracks which ring positions are in the window.
+ *
+ * Sum and count are adjusted on add and evict. Min and max come from monotonic
+ * deques of ring positions (amortized O(1)), and percentiles from a fixed-bucket
+ * histogram, so no query rescans the history.
+ */
+class WindowAggregate {
+    private final float[] column;
+    private final WeatherStatistics.Metric metric;
+    private final int[] minDeque;
+    private final int[] maxDeque;
+    private int minHead, minSize;
+    private int maxHead, maxSize;
+    private final int[] buckets;
+    private double sum;
+    private int count;
+
+    WindowAggregate(float[] column, WeatherStatistics.Metric metric) {
+        this.column = column;
+        this.metric = metric;
+        this.minDeque = new int[column.length];
+        this.maxDeque = new int[column.length];
+        this.buckets = new int[metric.bucketCount()];
+    }
+
+    void add(int position) {
+        float value = column[position];
+        sum += value;
+        count++;
+        buckets[metric.bucketOf(value)]++;
+        while (minSize > 0 && column[minDeque[index(minHead, minSize - 1)]] >= value) {
+            minSize--;
+        }
+        minDeque[index(minHead, minSize++)] = position;
+        while (maxSize > 0 && column[maxDeque[index(maxHead, maxSize - 1)]] <= value) {
+            maxSize--;
+        }
+        maxDeque[index(maxHead, maxSize++)] = position;
+    }
+
+    /**
+     * Must be called with the oldest position in the window, before the ring overwrites it.
+     */
+    void evict(int position) {
+        float value = column[position];
+        sum -= value;
+        count--;
+        buckets[metric.bucketOf(value)]--;
+        if (minSize > 0 && minDeque[minHead] == position) {
+            minHead = index(minHead, 1);
+            minSize--;
+        }
+        if (maxSize > 0 && maxDeque[maxHead] == position) {
+            maxHead = index(maxHead, 1);
+            maxSize--;
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    float min() {
+        return count == 0 ? Float.NaN : column[minDeque[minHead]];
+    }
+
+    float max() {
+        return count == 0 ? Float.NaN : column[maxDeque[maxHead]];
+    }
+
+    float average() {
+        return count == 0 ? Float.NaN : (float) (sum / count);
+    }
+
+    /**
+     * @return the midpoint of the bucket holding the percentile, clamped to the window's min and max
+     */
+    float percentile(double percentile) {
+        if (count == 0) {
+            return Float.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) {
+                return Math.min(max(), Math.max(min(), metric.midpointOf(bucket)));
+            }
+        }
+        return max();
+    }
+
+    private int index(int head, int offset) {
+        int i = head + offset;
+        return i >= column.length ? i - column.length : i;
+    }
+}
@@ -0,0 +1,65 @@
+package com.headfirst.chapter2.observerPattern.weatherstation.observers;
+
+/**
+ * Immutable snapshot of one metric's statistics over a sliding window.
+ * Every value is NaN when the window holds no readings.
+ */
+public final class WindowSummary {
+    private final long windowMillis;
+    private final int count;
+    private final float min;
+    private final float max;
+    private final float average;
+    private final float p50;
+    private final float p95;
+    private final float p99;
+
+    WindowSummary(long windowMillis, int count, float min, float max, float average, float p50, float p95, float p99) {
+        this.windowMillis = windowMillis;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float getAverage() {
+        return average;
+    }
+
+    public float getP50() {
+        return p50;
+    }
+
+    public float getP95() {
+        return p95;
+    }
+
+    public float getP99() {
+        return p99;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d min=%.1f max=%.1f avg=%.2f p50=%.1f p95=%.1f p99=%.1f",
+                count, min, max, average, p50, p95, p99);
+    }
+}
@@ -1,24 +1,55 @@
 package com.headfirst.chapter2.observerPattern.weatherstation.subject;
 
 
+import com.headfirst.chapter2.observerPattern.metrics.DispatchMonitor;
+import com.headfirst.chapter2.observerPattern.metrics.ObserverStats;
 import com.headfirst.chapter2.observerPattern.weatherstation.subject.Subject;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.AsyncObserver;
 import com.headfirst.chapter2.observerPattern.weatherstation.observers.Observer;
+import com.headfirst.chapter2.observerPattern.weatherstation.observers.OverflowPolicy;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * WeatherData is the concrete implementation of the Subject interface.
  * It holds the weather data and notifies observers of any changes.
+ *
+ * Observers may be registered and removed from any thread, even during a
+ * notification: notifyObservers() iterates over a snapshot without locking.
  */
 public class WeatherData implements Subject {
+    // Shared by all subjects that don't bring their own; daemon threads so the JVM can exit
+    private static final ExecutorService DEFAULT_DISPATCH_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "weather-dispatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final List<Observer> observers;
+    private final Map<Observer, AsyncObserver> asyncObservers;
+    private final Executor dispatchExecutor;
+    private volatile DispatchMonitor monitor;
     private float temperature;
     private float humidity;
     private float pressure;
 
     public WeatherData() {
-        this.observers = new ArrayList<>();
+        this(DEFAULT_DISPATCH_EXECUTOR);
+    }
+
+    /**
+     * @param dispatchExecutor runs the deliveries to observers registered in async mode
+     */
+    public WeatherData(Executor dispatchExecutor) {
+        this.observers = new CopyOnWriteArrayList<>();
+        this.asyncObservers = new ConcurrentHashMap<>();
+        this.dispatchExecutor = dispatchExecutor;
     }
 
     @Override
@@ -26,15 +57,75 @@ public class WeatherData implements Subject {
         observers.add(o);
     }
 
+    /**
+     * Registers an observer in async mode: it gets its own bounded queue drained on
+     * the dispatch executor, so it cannot slow down the sensor thread or other observers.
+     *
+     * @param o        the observer
+     * @param policy   what to do when the observer's queue is full
+     * @param capacity size of the observer's queue
+     * @throws IllegalStateException if the observer is already registered in async mode
+     */
+    public void registerObserver(Observer o, OverflowPolicy policy, int capacity) {
+        AsyncObserver async = new AsyncObserver(o, policy, capacity, dispatchExecutor);
+        if (asyncObservers.putIfAbsent(o, async) != null) {
+            throw new IllegalStateException("Observer is already registered in async mode: " + o);
+        }
+        DispatchMonitor current = monitor;
+        if (current != null) {
+            current.registerQueueDepth(async, async::getQueueDepth);
+        }
+        observers.add(async);
+    }
+
+    /**
+     * Times every update from now on and applies the monitor's SLO; null turns monitoring off.
+     * Async observers are timed on enqueue and report their queue depth.
+     */
+    public void setDispatchMonitor(DispatchMonitor monitor) {
+        if (monitor != null) {
+            for (AsyncObserver async : asyncObservers.values()) {
+                monitor.registerQueueDepth(async, async::getQueueDepth);
+            }
+        }
+        this.monitor = monitor;
+    }
+
     @Override
     public void removeObserver(Observer o) {
-        observers.remove(o);
+        AsyncObserver async = asyncObservers.remove(o);
+        if (async != null) {
+            observers.remove(async);
+            async.close();
+        } else {
+            observers.remove(o);
+        }
+        DispatchMonitor current = monitor;
+        if (current != null) {
+            current.forget(async != null ? async : o);
+        }
     }
 
     @Override
     public void notifyObservers() {
+        DispatchMonitor current = monitor;
+        if (current == null) {
+            for (Observer observer : observers) {
+                observer.update(temperature, humidity, pressure);
+            }
+            return;
+        }
         for (Observer observer : observers) {
-            observer.update(temperature, humidity, pressure);
+            ObserverStats stats = current.statsFor(observer);
+            if (stats.isQuarantined()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                observer.update(temperature, humidity, pressure);
+            } finally {
+                current.record(stats, System.nanoTime() - start);
+            }
         }
     }
 
@@ -44,4 +135,4 @@ public class WeatherData implements Subject {
         this.pressure = pressure;
         notifyObservers(); // Notify observers whenever the measurements change
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how AesGcmEncryptionDecorator throughput scales from 1 to N cores.
+ *
+ * Usage: AesGcmBenchmark [payloadMegabytes] [iterations]
+ */
+public class AesGcmBenchmark {
+    public static void main(String[] args) throws IOException, GeneralSecurityException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int cores = Runtime.getRuntime().availableProcessors();
+        byte[] payload = CompressionBenchmark.generatePayload(megabytes * 1024 * 1024);
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        SecretKey key = generator.generateKey();
+
+        System.out.printf("Payload: %d MB, %d iterations, up to %d cores%n", megabytes, iterations, cores);
+        System.out.printf("%-8s %14s %14s %10s%n", "threads", "encrypt MB/s", "decrypt MB/s", "speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(threads * 2, cores) : cores + 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                DataSource source = new AesGcmEncryptionDecorator(new InMemoryDataSource(), key,
+                        AesGcmEncryptionDecorator.DEFAULT_CHUNK_SIZE, pool);
+
+                CompressionBenchmark.write(source, payload); // Warm up
+                CompressionBenchmark.read(source);
+
+                long writeNanos = 0;
+                long readNanos = 0;
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    CompressionBenchmark.write(source, payload);
+                    writeNanos += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    long length = CompressionBenchmark.read(source);
+                    readNanos += System.nanoTime() - start;
+                    if (length != payload.length) {
+                        throw new IllegalStateException("Round trip lost data: " + length + " != " + payload.length);
+                    }
+                }
+                double totalMb = (double) payload.length * iterations / (1024 * 1024);
+                double encryptMbs = totalMb / (writeNanos / 1e9);
+                if (threads == 1) {
+                    baseline = encryptMbs;
+                }
+                System.out.printf("%-8d %14.1f %14.1f %9.2fx%n", threads, encryptMbs,
+                        totalMb / (readNanos / 1e9), encryptMbs / baseline);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
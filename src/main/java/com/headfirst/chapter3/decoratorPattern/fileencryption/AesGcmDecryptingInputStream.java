@@ -0,0 +1,107 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import javax.crypto.SecretKey;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads chunk frames ahead of the consumer and decrypts them in parallel.
+ * A stream that ends before its last chunk is reported as truncated.
+ */
+class AesGcmDecryptingInputStream extends InputStream {
+    private final DataInputStream in;
+    private final SecretKey key;
+    private final byte[] noncePrefix = new byte[AesGcmEncryptionDecorator.NONCE_PREFIX_LENGTH];
+    private final int fullCiphertextLength;
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final Deque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+    private byte[] current = new byte[0];
+    private int position;
+    private long chunkIndex;
+    private boolean lastChunkRead;
+    private boolean closed;
+
+    AesGcmDecryptingInputStream(InputStream in, SecretKey key, ForkJoinPool pool, int maxInFlight) throws IOException {
+        this.in = new DataInputStream(in);
+        this.key = key;
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+        if (this.in.readInt() != AesGcmEncryptionDecorator.MAGIC) {
+            throw new IOException("Not AES-GCM encrypted data");
+        }
+        this.fullCiphertextLength = this.in.readInt() + AesGcmEncryptionDecorator.TAG_LENGTH;
+        this.in.readFully(noncePrefix);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (position == current.length) {
+            fillPipeline();
+            if (inFlight.isEmpty()) {
+                return -1;
+            }
+            current = ParallelTasks.await(inFlight.removeFirst());
+            position = 0;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inFlight.forEach(task -> task.cancel(false));
+        inFlight.clear();
+        in.close();
+    }
+
+    private void fillPipeline() throws IOException {
+        while (!lastChunkRead && inFlight.size() < maxInFlight) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                throw new IOException("Encrypted data is truncated", e);
+            }
+            if (length < AesGcmEncryptionDecorator.TAG_LENGTH || length > fullCiphertextLength) {
+                throw new IOException("Invalid chunk length: " + length);
+            }
+            byte[] ciphertext = new byte[length];
+            in.readFully(ciphertext);
+            // Only the last chunk is shorter than a full one
+            boolean last = length < fullCiphertextLength;
+            long index = chunkIndex++;
+            inFlight.addLast(pool.submit(() -> AesGcmEncryptionDecorator.decrypt(key, noncePrefix, index, last, ciphertext)));
+            lastChunkRead = last;
+        }
+    }
+}
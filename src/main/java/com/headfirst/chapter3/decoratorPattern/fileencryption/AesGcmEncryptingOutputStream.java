@@ -0,0 +1,100 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import javax.crypto.SecretKey;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Cuts the written data into chunks, encrypts them in parallel and writes the
+ * frames in order. Closing the stream writes the final (possibly empty) chunk.
+ */
+class AesGcmEncryptingOutputStream extends OutputStream {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final DataOutputStream out;
+    private final SecretKey key;
+    private final byte[] noncePrefix = new byte[AesGcmEncryptionDecorator.NONCE_PREFIX_LENGTH];
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final Deque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+    private byte[] chunk;
+    private int position;
+    private long chunkIndex;
+    private boolean closed;
+
+    AesGcmEncryptingOutputStream(OutputStream out, SecretKey key, int chunkSize, ForkJoinPool pool, int maxInFlight)
+            throws IOException {
+        this.out = new DataOutputStream(out);
+        this.key = key;
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+        this.chunk = new byte[chunkSize];
+        RANDOM.nextBytes(noncePrefix);
+        this.out.writeInt(AesGcmEncryptionDecorator.MAGIC);
+        this.out.writeInt(chunkSize);
+        this.out.write(noncePrefix);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(b, off, chunk, position, count);
+            position += count;
+            off += count;
+            len -= count;
+            if (position == chunk.length) {
+                submitChunk(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitChunk(true);
+            while (!inFlight.isEmpty()) {
+                writeOldestFrame();
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+            out.close();
+        }
+    }
+
+    private void submitChunk(boolean last) throws IOException {
+        byte[] plain = chunk;
+        int length = position;
+        long index = chunkIndex++;
+        inFlight.addLast(pool.submit(() -> AesGcmEncryptionDecorator.encrypt(key, noncePrefix, index, last, plain, length)));
+        chunk = new byte[chunk.length];
+        position = 0;
+        if (inFlight.size() >= maxInFlight) {
+            writeOldestFrame();
+        }
+    }
+
+    private void writeOldestFrame() throws IOException {
+        byte[] ciphertext = ParallelTasks.await(inFlight.removeFirst());
+        out.writeInt(ciphertext.length);
+        out.write(ciphertext);
+    }
+}
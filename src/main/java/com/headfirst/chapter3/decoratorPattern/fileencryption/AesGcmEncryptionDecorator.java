@@ -0,0 +1,181 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decorator that encrypts data with AES-GCM, unlike {@link EncryptionDecorator}
+ * which only Base64-encodes it. The data is cut into independently authenticated
+ * chunks that are encrypted and decrypted in parallel and streamed in order.
+ *
+ * Format: magic, chunk size, 8-byte random nonce prefix, then one frame per chunk
+ * ([ciphertext length][ciphertext + 16-byte tag]). The nonce of chunk i is the
+ * prefix followed by i. The chunk index and a "last chunk" flag are authenticated
+ * as associated data, so reordered, dropped or truncated chunks fail to decrypt.
+ * Every chunk but the last holds exactly chunkSize bytes.
+ */
+public class AesGcmEncryptionDecorator implements DataSource {
+    static final int MAGIC = 0x41474331; // "AGC1"
+    static final int HEADER_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 8;
+    static final int TAG_LENGTH = 16;
+    static final int FRAME_HEADER_LENGTH = 4;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    // Cipher instances are not thread-safe; each pool worker keeps its own
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    });
+
+    private final DataSource wrappee;
+    private final SecretKey key;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public AesGcmEncryptionDecorator(DataSource wrappee, SecretKey key) {
+        this(wrappee, key, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param wrappee   the data source to decorate
+     * @param key       AES key (128, 192 or 256 bit)
+     * @param chunkSize plaintext bytes per authenticated chunk
+     * @param pool      pool that encrypts and decrypts the chunks
+     */
+    public AesGcmEncryptionDecorator(DataSource wrappee, SecretKey key, int chunkSize, ForkJoinPool pool) {
+        if (!"AES".equals(key.getAlgorithm())) {
+            throw new IllegalArgumentException("AES key required, got " + key.getAlgorithm());
+        }
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE - TAG_LENGTH - FRAME_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.wrappee = wrappee;
+        this.key = key;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return new AesGcmDecryptingInputStream(wrappee.openReader(), key, pool, maxChunksInFlight());
+    }
+
+    @Override
+    public OutputStream openWriter() throws IOException {
+        return new AesGcmEncryptingOutputStream(wrappee.openWriter(), key, chunkSize, pool, maxChunksInFlight());
+    }
+
+    /**
+     * Chunks sit at fixed positions, so only the ones covering the range are read and decrypted.
+     */
+    @Override
+    public byte[] readRange(long offset, int length) throws IOException {
+        DataSource.checkRange(offset, length);
+        long encryptedSize = wrappee.size();
+        long plainSize = plainSize(encryptedSize);
+        long end = Math.min(plainSize, offset + length);
+        if (offset >= end) {
+            return new byte[0];
+        }
+        ByteBuffer header = ByteBuffer.wrap(wrappee.readRange(0, HEADER_LENGTH));
+        if (header.getInt() != MAGIC || header.getInt() != chunkSize) {
+            throw new IOException("Not AES-GCM data written with chunk size " + chunkSize);
+        }
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        header.get(noncePrefix);
+
+        long fullFrame = fullFrameLength();
+        long lastChunk = (encryptedSize - HEADER_LENGTH) / fullFrame;
+        long first = offset / chunkSize;
+        long last = (end - 1) / chunkSize;
+        long frameStart = HEADER_LENGTH + first * fullFrame;
+        long frameEnd = Math.min(encryptedSize, HEADER_LENGTH + (last + 1) * fullFrame);
+        ByteBuffer frames = ByteBuffer.wrap(wrappee.readRange(frameStart, (int) (frameEnd - frameStart)));
+
+        List<ForkJoinTask<byte[]>> chunks = new ArrayList<>();
+        for (long chunk = first; chunk <= last; chunk++) {
+            byte[] ciphertext = new byte[frames.getInt()];
+            frames.get(ciphertext);
+            long index = chunk;
+            boolean lastOne = chunk == lastChunk;
+            chunks.add(pool.submit(() -> decrypt(key, noncePrefix, index, lastOne, ciphertext)));
+        }
+        byte[] result = new byte[(int) (end - offset)];
+        int position = 0;
+        for (long chunk = first; chunk <= last; chunk++) {
+            byte[] plain = ParallelTasks.await(chunks.get((int) (chunk - first)));
+            int from = (int) Math.max(0, offset - chunk * chunkSize);
+            int count = Math.min(plain.length - from, result.length - position);
+            System.arraycopy(plain, from, result, position, count);
+            position += count;
+        }
+        return result;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return plainSize(wrappee.size());
+    }
+
+    private long plainSize(long encryptedSize) throws IOException {
+        if (encryptedSize < HEADER_LENGTH + FRAME_HEADER_LENGTH + TAG_LENGTH) {
+            throw new IOException("Truncated AES-GCM data");
+        }
+        long frames = (encryptedSize - HEADER_LENGTH) / fullFrameLength() + 1;
+        return encryptedSize - HEADER_LENGTH - frames * (FRAME_HEADER_LENGTH + TAG_LENGTH);
+    }
+
+    private long fullFrameLength() {
+        return FRAME_HEADER_LENGTH + (long) chunkSize + TAG_LENGTH;
+    }
+
+    private int maxChunksInFlight() {
+        return pool.getParallelism() * 2;
+    }
+
+    static byte[] encrypt(SecretKey key, byte[] noncePrefix, long index, boolean last, byte[] plain, int length)
+            throws IOException {
+        try {
+            Cipher cipher = init(Cipher.ENCRYPT_MODE, key, noncePrefix, index, last);
+            return cipher.doFinal(plain, 0, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encryption of chunk " + index + " failed", e);
+        }
+    }
+
+    static byte[] decrypt(SecretKey key, byte[] noncePrefix, long index, boolean last, byte[] ciphertext)
+            throws IOException {
+        try {
+            Cipher cipher = init(Cipher.DECRYPT_MODE, key, noncePrefix, index, last);
+            return cipher.doFinal(ciphertext);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Chunk " + index + " failed authentication", e);
+        }
+    }
+
+    private static Cipher init(int mode, SecretKey key, byte[] noncePrefix, long index, boolean last)
+            throws GeneralSecurityException {
+        if (index > 0xFFFFFFFFL) {
+            throw new GeneralSecurityException("Too many chunks for one nonce prefix");
+        }
+        byte[] nonce = ByteBuffer.allocate(NONCE_PREFIX_LENGTH + 4).put(noncePrefix).putInt((int) index).array();
+        Cipher cipher = CIPHERS.get();
+        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(ByteBuffer.allocate(9).putLong(index).put((byte) (last ? 1 : 0)).array());
+        return cipher;
+    }
+}
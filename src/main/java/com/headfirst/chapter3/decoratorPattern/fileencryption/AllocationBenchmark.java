@@ -0,0 +1,67 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares heap bytes allocated per MB written and read through an
+ * Encryption -> Compression -> File stack, using the String adapter (the old
+ * API) and the ByteBuffer contract. Relies on the HotSpot thread allocation counter.
+ *
+ * Usage: AllocationBenchmark [payloadMegabytes] [iterations]
+ */
+public class AllocationBenchmark {
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        byte[] payload = CompressionBenchmark.generatePayload(megabytes * 1024 * 1024);
+        String text = new String(payload, StandardCharsets.UTF_8);
+        Path file = Files.createTempFile("allocation-benchmark", ".bin");
+        try {
+            DataSource source = new EncryptionDecorator(new CompressionDecorator(new FileDataSource(file.toString())));
+
+            // Warm up both paths
+            source.writeData(text);
+            source.readData();
+            source.write(ByteBuffer.wrap(payload));
+            source.read();
+
+            long threadId = Thread.currentThread().getId();
+            long stringWrite = 0;
+            long stringRead = 0;
+            long bufferWrite = 0;
+            long bufferRead = 0;
+            for (int i = 0; i < iterations; i++) {
+                long before = threads.getThreadAllocatedBytes(threadId);
+                source.writeData(text);
+                long afterWrite = threads.getThreadAllocatedBytes(threadId);
+                source.readData();
+                long afterRead = threads.getThreadAllocatedBytes(threadId);
+                stringWrite += afterWrite - before;
+                stringRead += afterRead - afterWrite;
+
+                before = threads.getThreadAllocatedBytes(threadId);
+                source.write(ByteBuffer.wrap(payload));
+                afterWrite = threads.getThreadAllocatedBytes(threadId);
+                source.read();
+                afterRead = threads.getThreadAllocatedBytes(threadId);
+                bufferWrite += afterWrite - before;
+                bufferRead += afterRead - afterWrite;
+            }
+
+            double perMb = (double) iterations * megabytes;
+            System.out.printf("Payload: %d MB, %d iterations%n", megabytes, iterations);
+            System.out.printf("%-12s %22s %22s%n", "API", "allocated/MB written", "allocated/MB read");
+            System.out.printf("%-12s %22.0f %22.0f%n", "String", stringWrite / perMb, stringRead / perMb);
+            System.out.printf("%-12s %22.0f %22.0f%n", "ByteBuffer", bufferWrite / perMb, bufferRead / perMb);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concrete component backed by an AsynchronousFileChannel. Writes return
+ * CompletableFutures and are group-committed: a single committer thread coalesces
+ * the writes queued by many threads into one batched append, followed by at most
+ * one fsync for the whole batch.
+ *
+ * A batch is closed once it holds {@code maxBatchBytes} or {@code linger} has
+ * passed since its first write. A future completes only after its batch is on
+ * disk (and synced, if enabled), so reads see every write whose future has completed.
+ */
+public class AsyncFileDataSource implements DataSource, AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+    public static final Duration DEFAULT_LINGER = Duration.ofMillis(2);
+
+    private static final PendingWrite SHUTDOWN = new PendingWrite(null, false);
+
+    private final Path path;
+    private final AsynchronousFileChannel channel;
+    private final int maxBatchBytes;
+    private final long lingerNanos;
+    private final boolean syncOnCommit;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    // Makes the closed check and queue.add atomic with close(), so nothing is queued after SHUTDOWN
+    private final Object lifecycleLock = new Object();
+    private boolean closed; // Guarded by lifecycleLock
+    private long position; // Only touched by the committer thread
+
+    public AsyncFileDataSource(String filename) {
+        this(filename, DEFAULT_MAX_BATCH_BYTES, DEFAULT_LINGER, true);
+    }
+
+    /**
+     * @param filename      the file to write to
+     * @param maxBatchBytes bytes after which a batch is committed without waiting for the linger
+     * @param linger        how long a batch waits for more writes after its first one
+     * @param syncOnCommit  whether every batch is forced to disk with a single fsync
+     */
+    public AsyncFileDataSource(String filename, int maxBatchBytes, Duration linger, boolean syncOnCommit) {
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchBytes);
+        }
+        this.path = Paths.get(filename);
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerNanos = linger.toNanos();
+        this.syncOnCommit = syncOnCommit;
+        try {
+            this.channel = AsynchronousFileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.position = channel.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open " + filename, e);
+        }
+        this.committer = new Thread(this::commitLoop, "group-commit-" + path.getFileName());
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Appends the remaining bytes of {@code data}, which are copied so the buffer can be reused.
+     *
+     * @return future completed with the file offset of the appended data once its batch is committed
+     */
+    public CompletableFuture<Long> appendAsync(ByteBuffer data) {
+        return enqueue(data, false);
+    }
+
+    /**
+     * Replaces the file contents, ordered with respect to the appends queued around it.
+     */
+    public CompletableFuture<Void> writeAsync(ByteBuffer data) {
+        return enqueue(data, true).thenApply(offset -> null);
+    }
+
+    @Override
+    public void write(ByteBuffer data) throws IOException {
+        join(writeAsync(data));
+    }
+
+    @Override
+    public ByteBuffer read() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File is too large for a single buffer, use openReader(): " + path);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (join(channel.read(buffer, buffer.position())) == -1) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    /**
+     * Truncates the file, then streams every write through the group-commit queue.
+     * Closing the stream waits until all of its data is committed. The first failed
+     * append is rethrown by the next write or by close, even if later appends succeeded.
+     */
+    @Override
+    public OutputStream openWriter() throws IOException {
+        join(writeAsync(ByteBuffer.allocate(0)));
+        return new OutputStream() {
+            private final AtomicReference<Throwable> failure = new AtomicReference<>();
+            private CompletableFuture<Long> last = CompletableFuture.completedFuture(0L);
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                rethrowFailure();
+                last = appendAsync(ByteBuffer.wrap(b, off, len));
+                last.whenComplete((offset, e) -> {
+                    if (e != null) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+
+            @Override
+            public void close() throws IOException {
+                join(last);
+                rethrowFailure();
+            }
+
+            private void rethrowFailure() throws IOException {
+                Throwable e = failure.get();
+                if (e instanceof IOException) {
+                    throw (IOException) e;
+                }
+                if (e != null) {
+                    throw new IOException("Asynchronous write failed", e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getSyncCount() {
+        return syncs.get();
+    }
+
+    /**
+     * Commits everything queued so far, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lifecycleLock) {
+            if (!closed) {
+                closed = true;
+                queue.add(SHUTDOWN);
+            }
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private CompletableFuture<Long> enqueue(ByteBuffer data, boolean replace) {
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining()).put(data).flip();
+        PendingWrite write = new PendingWrite(copy, replace);
+        synchronized (lifecycleLock) {
+            if (closed) {
+                throw new IllegalStateException("Data source is closed");
+            }
+            queue.add(write);
+        }
+        return write.result;
+    }
+
+    private void commitLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(maxBatchBytes);
+        boolean running = true;
+        while (running) {
+            try {
+                PendingWrite first = queue.take();
+                if (first == SHUTDOWN) {
+                    break;
+                }
+                batch.add(first);
+                long bytes = first.data.remaining();
+                long deadline = System.nanoTime() + lingerNanos;
+                while (bytes < maxBatchBytes) {
+                    PendingWrite next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(next);
+                    bytes += next.data.remaining();
+                }
+                commit(batch, buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            batch.clear();
+        }
+        synchronized (lifecycleLock) {
+            closed = true; // Also stops new writes if the committer was interrupted
+        }
+        failRemaining();
+    }
+
+    private void commit(List<PendingWrite> batch, ByteBuffer buffer) {
+        try {
+            buffer.clear();
+            for (PendingWrite write : batch) {
+                if (write.replace) {
+                    flush(buffer);
+                    channel.truncate(0);
+                    position = 0;
+                }
+                if (write.data.remaining() > buffer.remaining()) {
+                    flush(buffer);
+                }
+                write.offset = position + buffer.position();
+                if (write.data.remaining() > buffer.capacity()) {
+                    writeFully(write.data); // Larger than a whole batch: written on its own
+                } else {
+                    buffer.put(write.data);
+                }
+            }
+            flush(buffer);
+            if (syncOnCommit) {
+                channel.force(false);
+                syncs.incrementAndGet();
+            }
+            batches.incrementAndGet();
+            writes.addAndGet(batch.size());
+            for (PendingWrite write : batch) {
+                write.result.complete(write.offset);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (PendingWrite write : batch) {
+                write.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            position += join(channel.write(data, position));
+        }
+    }
+
+    private void failRemaining() {
+        IOException closedException = new IOException("Data source closed before the write was committed");
+        for (PendingWrite write; (write = queue.poll()) != null; ) {
+            if (write != SHUTDOWN) {
+                write.result.completeExceptionally(closedException);
+            }
+        }
+    }
+
+    private static <T> T join(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for I/O", e);
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Asynchronous I/O failed", e.getCause());
+        }
+    }
+
+    private static final class PendingWrite {
+        final ByteBuffer data;
+        final boolean replace;
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        long offset;
+
+        PendingWrite(ByteBuffer data, boolean replace) {
+            this.data = data;
+            this.replace = replace;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+/**
+ * Measures how BlockCompressionDecorator throughput scales from 1 to N cores.
+ *
+ * Usage: BlockCompressionBenchmark [payloadMegabytes] [iterations]
+ */
+public class BlockCompressionBenchmark {
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int cores = Runtime.getRuntime().availableProcessors();
+        byte[] payload = CompressionBenchmark.generatePayload(megabytes * 1024 * 1024);
+
+        System.out.printf("Payload: %d MB, %d iterations, up to %d cores%n", megabytes, iterations, cores);
+        System.out.printf("%-8s %14s %16s %10s%n", "threads", "compress MB/s", "decompress MB/s", "speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(threads * 2, cores) : cores + 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                InMemoryDataSource memory = new InMemoryDataSource();
+                DataSource source = new BlockCompressionDecorator(memory,
+                        BlockCompressionDecorator.DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, pool);
+
+                CompressionBenchmark.write(source, payload); // Warm up
+                CompressionBenchmark.read(source);
+
+                long writeNanos = 0;
+                long readNanos = 0;
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    CompressionBenchmark.write(source, payload);
+                    writeNanos += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    long length = CompressionBenchmark.read(source);
+                    readNanos += System.nanoTime() - start;
+                    if (length != payload.length) {
+                        throw new IllegalStateException("Round trip lost data: " + length + " != " + payload.length);
+                    }
+                }
+                double totalMb = (double) payload.length * iterations / (1024 * 1024);
+                double compressMbs = totalMb / (writeNanos / 1e9);
+                if (threads == 1) {
+                    baseline = compressMbs;
+                }
+                System.out.printf("%-8d %14.1f %16.1f %9.2fx%n", threads, compressMbs,
+                        totalMb / (readNanos / 1e9), compressMbs / baseline);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+
+/**
+ * Decorator that compresses data in fixed-size blocks, pigz style. Blocks are
+ * independent zlib streams, so they are compressed and decompressed in parallel
+ * on a ForkJoinPool while the output keeps the original block order.
+ *
+ * Format: magic, block size, then one frame per block
+ * ([uncompressed length][compressed length][zlib bytes]), a zero-length end frame
+ * and a {@link BlockIndex} footer that lets {@link #readRange} inflate only the
+ * blocks a slice touches. The index is read once and reused until the size of
+ * the wrapped source changes or the data is rewritten through this decorator.
+ */
+public class BlockCompressionDecorator implements DataSource {
+    static final int MAGIC = 0x424C5A31; // "BLZ1"
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final DataSource wrappee;
+    private final int blockSize;
+    private final int level;
+    private final ForkJoinPool pool;
+    private volatile BlockIndex index;
+
+    public BlockCompressionDecorator(DataSource wrappee) {
+        this(wrappee, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param wrappee   the data source to decorate
+     * @param blockSize uncompressed bytes per block
+     * @param level     zlib compression level
+     * @param pool      pool that compresses and decompresses the blocks
+     */
+    public BlockCompressionDecorator(DataSource wrappee, int blockSize, int level, ForkJoinPool pool) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.wrappee = wrappee;
+        this.blockSize = blockSize;
+        this.level = level;
+        this.pool = pool;
+    }
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return new BlockInflatingInputStream(wrappee.openReader(), pool, maxBlocksInFlight());
+    }
+
+    @Override
+    public OutputStream openWriter() throws IOException {
+        index = null;
+        return new BlockDeflatingOutputStream(wrappee.openWriter(), blockSize, level, pool, maxBlocksInFlight());
+    }
+
+    @Override
+    public byte[] readRange(long offset, int length) throws IOException {
+        DataSource.checkRange(offset, length);
+        BlockIndex index = currentIndex();
+        long end = Math.min(index.uncompressedSize(), offset + length);
+        if (offset >= end) {
+            return new byte[0];
+        }
+        int first = index.blockAt(offset);
+        int last = index.blockAt(end - 1);
+
+        // One read covers every frame touched by the range
+        long frameStart = index.frameOffset(first);
+        ByteBuffer frames = ByteBuffer.wrap(wrappee.readRange(frameStart, (int) (index.frameOffset(last + 1) - frameStart)));
+        List<ForkJoinTask<byte[]>> blocks = new ArrayList<>();
+        for (int block = first; block <= last; block++) {
+            int uncompressedLength = frames.getInt();
+            byte[] compressed = new byte[frames.getInt()];
+            frames.get(compressed);
+            blocks.add(pool.submit(() -> BlockInflatingInputStream.decompress(compressed, uncompressedLength)));
+        }
+
+        byte[] result = new byte[(int) (end - offset)];
+        int position = 0;
+        for (int block = first; block <= last; block++) {
+            byte[] data = ParallelTasks.await(blocks.get(block - first));
+            int from = (int) Math.max(0, offset - index.uncompressedOffset(block));
+            int count = Math.min(data.length - from, result.length - position);
+            System.arraycopy(data, from, result, position, count);
+            position += count;
+        }
+        return result;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return currentIndex().uncompressedSize();
+    }
+
+    private BlockIndex currentIndex() throws IOException {
+        long size = wrappee.size();
+        BlockIndex current = index;
+        if (current == null || current.sourceSize() != size) {
+            current = BlockIndex.read(wrappee, size);
+            index = current;
+        }
+        return current;
+    }
+
+    // Enough to keep every worker busy while bounding memory to a few blocks per worker
+    private int maxBlocksInFlight() {
+        return pool.getParallelism() * 2;
+    }
+}
@@ -0,0 +1,131 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+
+/**
+ * Splits the written data into blocks, compresses them in parallel and writes
+ * the frames in their original order, followed by the block index.
+ */
+class BlockDeflatingOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final int level;
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final Deque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+    private final Deque<Integer> inFlightLengths = new ArrayDeque<>();
+    private final BlockIndex.Builder index = new BlockIndex.Builder();
+    private long compressedPosition; // DataOutputStream.size() saturates at 2 GB
+    private byte[] block;
+    private int position;
+    private boolean closed;
+
+    BlockDeflatingOutputStream(OutputStream out, int blockSize, int level, ForkJoinPool pool, int maxInFlight)
+            throws IOException {
+        this.out = new DataOutputStream(out);
+        this.level = level;
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+        this.block = new byte[blockSize];
+        this.out.writeInt(BlockCompressionDecorator.MAGIC);
+        this.out.writeInt(blockSize);
+        this.compressedPosition = BlockIndex.HEADER_LENGTH;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            int count = Math.min(len, block.length - position);
+            System.arraycopy(b, off, block, position, count);
+            position += count;
+            off += count;
+            len -= count;
+            if (position == block.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (position > 0) {
+                submitBlock();
+            }
+            while (!inFlight.isEmpty()) {
+                writeOldestFrame();
+            }
+            writeEnd();
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+            out.close();
+        }
+    }
+
+    private void writeEnd() throws IOException {
+        index.end(compressedPosition);
+        out.writeInt(0);
+        out.writeInt(0);
+        index.writeTo(out);
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = position;
+        inFlight.addLast(pool.submit(() -> compress(data, length, level)));
+        inFlightLengths.addLast(length);
+        block = new byte[block.length];
+        position = 0;
+        if (inFlight.size() >= maxInFlight) {
+            writeOldestFrame();
+        }
+    }
+
+    private void writeOldestFrame() throws IOException {
+        byte[] compressed = ParallelTasks.await(inFlight.removeFirst());
+        int uncompressedLength = inFlightLengths.removeFirst();
+        index.add(uncompressedLength, compressedPosition);
+        out.writeInt(uncompressedLength);
+        out.writeInt(compressed.length);
+        out.write(compressed);
+        compressedPosition += BlockIndex.FRAME_HEADER_LENGTH + compressed.length;
+    }
+
+    static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = CodecPool.borrowDeflater(level);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] output = new byte[Math.max(64, length / 2)];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                size += deflater.deflate(output, size, output.length - size);
+            }
+            return Arrays.copyOf(output, size);
+        } finally {
+            CodecPool.release(deflater);
+        }
+    }
+}
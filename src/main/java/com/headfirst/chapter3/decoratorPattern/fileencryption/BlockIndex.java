@@ -0,0 +1,131 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Footer of a block-compressed stream mapping uncompressed offsets to frame offsets.
+ *
+ * Layout after the end frame: entry count, then (uncompressed offset, frame offset)
+ * pairs as longs, with a final sentinel entry for the end of the data, then the
+ * index position (long) and the index magic (int).
+ */
+final class BlockIndex {
+    static final int HEADER_LENGTH = 8;
+    static final int FRAME_HEADER_LENGTH = 8;
+    static final int FOOTER_LENGTH = 12;
+    static final int MAGIC = 0x424C5849; // "BLXI"
+
+    private final long sourceSize;
+    private final long[] uncompressedOffsets;
+    private final long[] frameOffsets;
+
+    private BlockIndex(long sourceSize, long[] uncompressedOffsets, long[] frameOffsets) {
+        this.sourceSize = sourceSize;
+        this.uncompressedOffsets = uncompressedOffsets;
+        this.frameOffsets = frameOffsets;
+    }
+
+    /**
+     * Reads the index from the tail of a block-compressed source with two range reads.
+     */
+    static BlockIndex read(DataSource source) throws IOException {
+        return read(source, source.size());
+    }
+
+    /**
+     * @param size the current size of the source, as returned by {@link DataSource#size()}
+     */
+    static BlockIndex read(DataSource source, long size) throws IOException {
+        if (size < HEADER_LENGTH + FRAME_HEADER_LENGTH + FOOTER_LENGTH) {
+            throw new IOException("Block-compressed data has no index");
+        }
+        ByteBuffer footer = ByteBuffer.wrap(source.readRange(size - FOOTER_LENGTH, FOOTER_LENGTH));
+        long indexPosition = footer.getLong();
+        if (footer.getInt() != MAGIC || indexPosition < 0 || indexPosition > size - FOOTER_LENGTH) {
+            throw new IOException("Block-compressed data has no index");
+        }
+        ByteBuffer index = ByteBuffer.wrap(source.readRange(indexPosition, (int) (size - FOOTER_LENGTH - indexPosition)));
+        int entries = index.getInt();
+        long[] uncompressedOffsets = new long[entries];
+        long[] frameOffsets = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            uncompressedOffsets[i] = index.getLong();
+            frameOffsets[i] = index.getLong();
+        }
+        return new BlockIndex(size, uncompressedOffsets, frameOffsets);
+    }
+
+    /**
+     * Size of the compressed source the index was read from.
+     */
+    long sourceSize() {
+        return sourceSize;
+    }
+
+    int blockCount() {
+        return uncompressedOffsets.length - 1;
+    }
+
+    long uncompressedSize() {
+        return uncompressedOffsets[blockCount()];
+    }
+
+    long uncompressedOffset(int block) {
+        return uncompressedOffsets[block];
+    }
+
+    /**
+     * Frame offset of the block, or of the end frame when {@code block == blockCount()}.
+     */
+    long frameOffset(int block) {
+        return frameOffsets[block];
+    }
+
+    /**
+     * Block containing the given uncompressed offset.
+     */
+    int blockAt(long offset) {
+        int i = Arrays.binarySearch(uncompressedOffsets, 0, blockCount(), offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    static final class Builder {
+        private long[] uncompressedOffsets = new long[16];
+        private long[] frameOffsets = new long[16];
+        private int entries;
+        private long uncompressedPosition;
+
+        void add(int uncompressedLength, long frameOffset) {
+            append(uncompressedPosition, frameOffset);
+            uncompressedPosition += uncompressedLength;
+        }
+
+        void end(long endFrameOffset) {
+            append(uncompressedPosition, endFrameOffset);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            long indexPosition = frameOffsets[entries - 1] + FRAME_HEADER_LENGTH;
+            out.writeInt(entries);
+            for (int i = 0; i < entries; i++) {
+                out.writeLong(uncompressedOffsets[i]);
+                out.writeLong(frameOffsets[i]);
+            }
+            out.writeLong(indexPosition);
+            out.writeInt(MAGIC);
+        }
+
+        private void append(long uncompressedOffset, long frameOffset) {
+            if (entries == frameOffsets.length) {
+                uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, entries * 2);
+                frameOffsets = Arrays.copyOf(frameOffsets, entries * 2);
+            }
+            uncompressedOffsets[entries] = uncompressedOffset;
+            frameOffsets[entries] = frameOffset;
+            entries++;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads block frames ahead of the consumer and decompresses them in parallel.
+ */
+class BlockInflatingInputStream extends InputStream {
+    private final DataInputStream in;
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final Deque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean endOfFrames;
+    private boolean closed;
+
+    BlockInflatingInputStream(InputStream in, ForkJoinPool pool, int maxInFlight) throws IOException {
+        this.in = new DataInputStream(in);
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+        if (this.in.readInt() != BlockCompressionDecorator.MAGIC) {
+            throw new IOException("Not a block-compressed stream");
+        }
+        this.in.readInt(); // Block size, informational for readers
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (position == current.length) {
+            fillPipeline();
+            if (inFlight.isEmpty()) {
+                return -1;
+            }
+            current = ParallelTasks.await(inFlight.removeFirst());
+            position = 0;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inFlight.forEach(task -> task.cancel(false));
+        inFlight.clear();
+        in.close();
+    }
+
+    private void fillPipeline() throws IOException {
+        while (!endOfFrames && inFlight.size() < maxInFlight) {
+            int uncompressedLength = in.readInt();
+            int compressedLength = in.readInt();
+            if (uncompressedLength == 0) {
+                endOfFrames = true;
+                return;
+            }
+            byte[] compressed = in.readNBytes(compressedLength);
+            if (compressed.length != compressedLength) {
+                throw new IOException("Truncated block frame");
+            }
+            inFlight.addLast(pool.submit(() -> decompress(compressed, uncompressedLength)));
+        }
+    }
+
+    static byte[] decompress(byte[] compressed, int uncompressedLength) throws IOException {
+        Inflater inflater = CodecPool.borrowInflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] output = new byte[uncompressedLength];
+            int size = 0;
+            while (size < uncompressedLength && !inflater.finished()) {
+                int length = inflater.inflate(output, size, uncompressedLength - size);
+                if (length == 0 && inflater.needsInput()) {
+                    break;
+                }
+                size += length;
+            }
+            if (size != uncompressedLength) {
+                throw new IOException("Block decompressed to " + size + " bytes, expected " + uncompressedLength);
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block", e);
+        } finally {
+            CodecPool.release(inflater);
+        }
+    }
+}
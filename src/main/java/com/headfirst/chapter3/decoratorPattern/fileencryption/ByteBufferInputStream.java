@@ -0,0 +1,77 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream over a sequence of buffers. Decorators that can work on buffers
+ * directly call {@link #nextBuffer()} instead of copying through read().
+ */
+class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer[] buffers;
+    private int current;
+
+    ByteBufferInputStream(ByteBuffer... buffers) {
+        this.buffers = buffers;
+    }
+
+    @Override
+    public int read() {
+        ByteBuffer buffer = currentBuffer();
+        return buffer == null ? -1 : buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = currentBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = 0;
+        ByteBuffer buffer;
+        while (skipped < n && (buffer = currentBuffer()) != null) {
+            int count = (int) Math.min(n - skipped, buffer.remaining());
+            buffer.position(buffer.position() + count);
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        ByteBuffer buffer = currentBuffer();
+        return buffer == null ? 0 : buffer.remaining();
+    }
+
+    /**
+     * Hands out the rest of the current buffer without copying and advances past it.
+     *
+     * @return the remaining bytes of the current buffer, or null at the end of the stream
+     */
+    ByteBuffer nextBuffer() {
+        ByteBuffer buffer = currentBuffer();
+        if (buffer == null) {
+            return null;
+        }
+        ByteBuffer slice = buffer.slice();
+        buffer.position(buffer.limit());
+        return slice;
+    }
+
+    private ByteBuffer currentBuffer() {
+        while (current < buffers.length && !buffers[current].hasRemaining()) {
+            current++;
+        }
+        return current < buffers.length ? buffers[current] : null;
+    }
+}
@@ -0,0 +1,121 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Decorator that caches the decoded result of the stack below it, so repeated
+ * reads skip the disk read, decompression and decryption. Place it on top:
+ * {@code new CachingDataSource(new EncryptionDecorator(new CompressionDecorator(file)), filename, cache)}.
+ *
+ * Writes through this decorator invalidate the entry. Changes made to the file
+ * by anyone else are detected through its modification time and size.
+ */
+public class CachingDataSource implements DataSource {
+    private final DataSource wrappee;
+    private final Path file;
+    private final String key;
+    private final DataSourceCache cache;
+
+    /**
+     * @param wrappee  the data source to decorate
+     * @param filename the file underneath the stack, used as cache key and to detect external changes
+     * @param cache    the cache, which may be shared with other data sources
+     */
+    public CachingDataSource(DataSource wrappee, String filename, DataSourceCache cache) {
+        this.wrappee = wrappee;
+        this.file = Paths.get(filename);
+        this.key = file.toAbsolutePath().normalize().toString();
+        this.cache = cache;
+    }
+
+    @Override
+    public void write(ByteBuffer data) throws IOException {
+        try {
+            wrappee.write(data);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the cached data, loading it on a miss.
+     */
+    @Override
+    public ByteBuffer read() throws IOException {
+        Object version = version();
+        ByteBuffer cached = cache.get(key, version);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.generation(key);
+        ByteBuffer data = wrappee.read().asReadOnlyBuffer();
+        // Only cache if the file did not change while it was being read
+        if (version.equals(version())) {
+            cache.put(key, version, generation, data);
+        }
+        return data.duplicate();
+    }
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return new ByteBufferInputStream(read());
+    }
+
+    @Override
+    public OutputStream openWriter() throws IOException {
+        cache.invalidate(key);
+        return new FilterOutputStream(wrappee.openWriter()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    cache.invalidate(key);
+                }
+            }
+        };
+    }
+
+    /**
+     * Served from the cache when the data is cached; misses go to the stack below
+     * without loading the whole data.
+     */
+    @Override
+    public byte[] readRange(long offset, int length) throws IOException {
+        DataSource.checkRange(offset, length);
+        ByteBuffer data = cache.get(key, version());
+        if (data == null) {
+            return wrappee.readRange(offset, length);
+        }
+        int from = (int) Math.min(offset, data.limit());
+        int to = (int) Math.min(data.limit(), from + (long) length);
+        byte[] range = new byte[to - from];
+        data.get(from, range, 0, range.length);
+        return range;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ByteBuffer data = cache.get(key, version());
+        return data != null ? data.remaining() : wrappee.size();
+    }
+
+    private Object version() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return List.of(attributes.lastModifiedTime(), attributes.size());
+    }
+}
@@ -0,0 +1,85 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pool of Deflater/Inflater instances and I/O buffers shared by the compression decorators.
+ * Deflaters and Inflaters hold native zlib memory, so creating one per call is expensive.
+ */
+final class CodecPool {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final Pool<Deflater> DEFLATERS = new Pool<>();
+    private static final Pool<Inflater> INFLATERS = new Pool<>();
+    private static final Pool<byte[]> BUFFERS = new Pool<>();
+
+    private CodecPool() {
+    }
+
+    static Deflater borrowDeflater(int level) {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            return new Deflater(level);
+        }
+        deflater.setLevel(level); // Takes effect on the first deflate call after reset
+        return deflater;
+    }
+
+    static void release(Deflater deflater) {
+        deflater.reset();
+        if (!DEFLATERS.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    static Inflater borrowInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    static void release(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    static byte[] borrowBuffer() {
+        byte[] buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    static void release(byte[] buffer) {
+        BUFFERS.offer(buffer);
+    }
+
+    /**
+     * Bounded lock-free free list; instances beyond MAX_IDLE are handed back to the caller.
+     */
+    private static final class Pool<T> {
+        private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        T poll() {
+            T item = idle.poll();
+            if (item != null) {
+                size.decrementAndGet();
+            }
+            return item;
+        }
+
+        boolean offer(T item) {
+            if (size.incrementAndGet() > MAX_IDLE) {
+                size.decrementAndGet();
+                return false;
+            }
+            idle.offer(item);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures CompressionDecorator throughput in MB/s for every compression level.
+ * Data is kept in memory so only the codec is measured.
+ *
+ * Usage: CompressionBenchmark [payloadMegabytes] [iterations]
+ */
+public class CompressionBenchmark {
+    private static final String[] WORDS = {
+            "sensor", "reading", "temperature", "humidity", "pressure", "station",
+            "timestamp", "value", "ok", "warn", "error", "node", "cluster", "write"
+    };
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        byte[] payload = generatePayload(megabytes * 1024 * 1024);
+
+        System.out.printf("Payload: %d MB, %d iterations per level%n", megabytes, iterations);
+        System.out.printf("%-6s %8s %14s %16s%n", "level", "ratio", "compress MB/s", "decompress MB/s");
+        for (int level = 1; level <= 9; level++) {
+            InMemoryDataSource memory = new InMemoryDataSource();
+            CompressionDecorator source = new CompressionDecorator(memory, level);
+
+            write(source, payload); // Warm up
+            read(source);
+
+            long writeNanos = 0;
+            long readNanos = 0;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                write(source, payload);
+                writeNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long length = read(source);
+                readNanos += System.nanoTime() - start;
+                if (length != payload.length) {
+                    throw new IllegalStateException("Round trip lost data: " + length + " != " + payload.length);
+                }
+            }
+            double totalMb = (double) payload.length * iterations / (1024 * 1024);
+            System.out.printf("%-6d %8.2f %14.1f %16.1f%n", level,
+                    (double) payload.length / memory.size(),
+                    totalMb / (writeNanos / 1e9),
+                    totalMb / (readNanos / 1e9));
+        }
+    }
+
+    static void write(DataSource source, byte[] payload) throws IOException {
+        try (OutputStream out = source.openWriter()) {
+            for (int off = 0; off < payload.length; off += 64 * 1024) {
+                out.write(payload, off, Math.min(64 * 1024, payload.length - off));
+            }
+        }
+    }
+
+    static long read(DataSource source) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = source.openReader()) {
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Log-like text: compressible, but not trivially so.
+     */
+    static byte[] generatePayload(int size) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(size + 64);
+        while (builder.length() < size) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]).append('=')
+                    .append(random.nextInt(100_000)).append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        return Arrays.copyOf(bytes, size);
+    }
+}
@@ -1,5 +1,11 @@
 package com.headfirst.chapter3.decoratorPattern.fileencryption;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
@@ -9,48 +15,64 @@ import java.util.zip.Inflater;
  */
 public class CompressionDecorator implements DataSource {
     private final DataSource wrappee;
+    private final int level;
 
     public CompressionDecorator(DataSource wrappee) {
+        this(wrappee, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param wrappee the data source to decorate
+     * @param level   zlib compression level, from Deflater.BEST_SPEED (1) to Deflater.BEST_COMPRESSION (9)
+     */
+    public CompressionDecorator(DataSource wrappee, int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
         this.wrappee = wrappee;
+        this.level = level;
     }
 
     @Override
-    public void writeData(String data) {
-        try {
-            byte[] compressed = compress(data.getBytes());
-            wrappee.writeData(new String(compressed, "ISO-8859-1")); // Use a safe encoding
-        } catch (Exception e) {
-            throw new RuntimeException("Compression failed", e);
+    public void write(ByteBuffer data) throws IOException {
+        try (DeflatingOutputStream out = new DeflatingOutputStream(wrappee.openWriter(), level)) {
+            out.write(data);
         }
     }
 
     @Override
-    public String readData() {
+    public ByteBuffer read() throws IOException {
+        ByteBuffer compressed = wrappee.read();
+        Inflater inflater = CodecPool.borrowInflater();
         try {
-            String data = wrappee.readData();
-            byte[] decompressed = decompress(data.getBytes("ISO-8859-1")); // Use the same encoding
-            return new String(decompressed);
-        } catch (Exception e) {
-            throw new RuntimeException("Decompression failed", e);
+            inflater.setInput(compressed);
+            byte[] output = new byte[Math.max(64, compressed.remaining() * 4)];
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                int length = inflater.inflate(output, size, output.length - size);
+                if (length == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Unexpected end of compressed data");
+                }
+                size += length;
+            }
+            return ByteBuffer.wrap(output, 0, size);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed data", e);
+        } finally {
+            CodecPool.release(inflater);
         }
     }
 
-    private byte[] compress(byte[] data) throws Exception {
-        Deflater deflater = new Deflater();
-        deflater.setInput(data);
-        deflater.finish();
-        byte[] buffer = new byte[1024];
-        int length = deflater.deflate(buffer);
-        deflater.end();
-        return java.util.Arrays.copyOf(buffer, length);
+    @Override
+    public InputStream openReader() throws IOException {
+        return new InflatingInputStream(wrappee.openReader());
     }
 
-    private byte[] decompress(byte[] data) throws Exception {
-        Inflater inflater = new Inflater();
-        inflater.setInput(data);
-        byte[] buffer = new byte[1024];
-        int length = inflater.inflate(buffer);
-        inflater.end();
-        return java.util.Arrays.copyOf(buffer, length);
+    @Override
+    public OutputStream openWriter() throws IOException {
+        return new DeflatingOutputStream(wrappee.openWriter(), level);
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,119 @@
 package com.headfirst.chapter3.decoratorPattern.fileencryption;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Base interface for data sources.
+ *
+ * The ByteBuffer methods are the primary contract: buffers are handed from one
+ * decorator to the next without re-encoding. The String methods are thin UTF-8
+ * adapters on top of them.
  */
 public interface DataSource {
-    void writeData(String data);
-    String readData();
+    default void writeData(String data) {
+        try {
+            write(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write data", e);
+        }
+    }
+
+    default String readData() {
+        try {
+            return StandardCharsets.UTF_8.decode(read()).toString();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read data", e);
+        }
+    }
+
+    /**
+     * Replaces the stored data with the remaining bytes of {@code data}. The
+     * buffer's position is advanced; implementations do not keep a reference to it.
+     */
+    default void write(ByteBuffer data) throws IOException {
+        try (OutputStream out = openWriter()) {
+            if (data.hasArray()) {
+                out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                data.position(data.limit());
+            } else {
+                byte[] chunk = new byte[Math.min(data.remaining(), 64 * 1024)];
+                while (data.hasRemaining()) {
+                    int count = Math.min(chunk.length, data.remaining());
+                    data.get(chunk, 0, count);
+                    out.write(chunk, 0, count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns all stored data. The buffer may be read-only or shared with the
+     * source (e.g. a memory mapping), so callers must not write into it.
+     * Data larger than 2 GB has to be read with {@link #openReader()}.
+     */
+    default ByteBuffer read() throws IOException {
+        try (InputStream in = openReader()) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    /**
+     * Opens a stream over the stored data. Decorators wrap the stream of the
+     * component below them, so a read uses constant memory whatever the size.
+     * The caller is responsible for closing the stream.
+     */
+    InputStream openReader() throws IOException;
+
+    /**
+     * Opens a stream that replaces the stored data. The data is only complete
+     * once the stream has been closed.
+     */
+    OutputStream openWriter() throws IOException;
+
+    /**
+     * Reads up to {@code length} bytes starting at {@code offset}; fewer are returned
+     * near the end of the data. The default streams from the start and skips, so
+     * sources that can seek should override it.
+     */
+    default byte[] readRange(long offset, int length) throws IOException {
+        checkRange(offset, length);
+        try (InputStream in = openReader()) {
+            long skipped = 0;
+            while (skipped < offset) {
+                long n = in.skip(offset - skipped);
+                if (n <= 0) {
+                    if (in.read() == -1) {
+                        return new byte[0];
+                    }
+                    n = 1;
+                }
+                skipped += n;
+            }
+            return in.readNBytes(length);
+        }
+    }
+
+    /**
+     * Size of the data as returned by {@link #openReader()}. The default counts it by streaming.
+     */
+    default long size() throws IOException {
+        long size = 0;
+        try (InputStream in = openReader()) {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                size += n;
+            }
+        }
+        return size;
+    }
+
+    static void checkRange(long offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range: offset=" + offset + ", length=" + length);
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of decoded data, bounded by the total number of bytes it holds.
+ * One cache can be shared by many {@link CachingDataSource}s.
+ *
+ * Every entry carries a version stamp (e.g. the file's mtime and size); a lookup
+ * with a different stamp is a miss. Every invalidation bumps a single generation
+ * counter, so a read that started before it cannot put stale data back. Being
+ * global, the counter needs no per-key state; the cost is that a load racing an
+ * invalidation of any other key is not cached either, which is only a later miss.
+ */
+public class DataSourceCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long bytes;
+    private long generation;
+
+    public DataSourceCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return a read-only view of the cached data, or null if absent or stale
+     */
+    public synchronized ByteBuffer get(String key, Object version) {
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.version.equals(version)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.data.duplicate();
+    }
+
+    /**
+     * Generation to pass to {@link #put}; read it before loading the data.
+     */
+    public synchronized long generation(String key) {
+        return generation;
+    }
+
+    /**
+     * Caches {@code data} unless a key was invalidated since {@code generation}
+     * was read or the data alone is larger than the cache.
+     */
+    public synchronized void put(String key, Object version, long generation, ByteBuffer data) {
+        if (generation != this.generation || data.remaining() > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(Objects.requireNonNull(version), data.asReadOnlyBuffer()));
+        if (previous != null) {
+            bytes -= previous.data.remaining();
+        }
+        bytes += data.remaining();
+        evictToFit();
+    }
+
+    public synchronized void invalidate(String key) {
+        generation++;
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.data.remaining();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized long getSizeBytes() {
+        return bytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private void evictToFit() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().data.remaining();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+        final Object version;
+        final ByteBuffer data;
+
+        Entry(Object version, ByteBuffer data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses everything written to it with a pooled Deflater. Unlike a single
+ * deflate() call into a fixed buffer, the output is drained in a loop, so inputs
+ * of any size are handled incrementally.
+ */
+class DeflatingOutputStream extends FilterOutputStream {
+    private final Deflater deflater;
+    private final byte[] buffer;
+    private boolean closed;
+
+    DeflatingOutputStream(OutputStream out, int level) {
+        super(out);
+        this.deflater = CodecPool.borrowDeflater(level);
+        this.buffer = CodecPool.borrowBuffer();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return;
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    /**
+     * Compresses the remaining bytes of {@code data} without copying them first.
+     */
+    void write(ByteBuffer data) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (!data.hasRemaining()) {
+            return;
+        }
+        deflater.setInput(data);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+            out.close();
+        } finally {
+            CodecPool.release(deflater);
+            CodecPool.release(buffer);
+        }
+    }
+
+    private void drain() throws IOException {
+        int length = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+        if (length > 0) {
+            out.write(buffer, 0, length);
+        }
+    }
+}
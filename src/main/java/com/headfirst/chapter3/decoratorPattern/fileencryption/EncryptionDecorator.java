@@ -1,5 +1,10 @@
 package com.headfirst.chapter3.decoratorPattern.fileencryption;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Base64;
 
 /**
@@ -13,14 +18,55 @@ public class EncryptionDecorator implements DataSource {
     }
 
     @Override
-    public void writeData(String data) {
-        String encryptedData = Base64.getEncoder().encodeToString(data.getBytes());
-        wrappee.writeData(encryptedData);
+    public void write(ByteBuffer data) throws IOException {
+        wrappee.write(Base64.getEncoder().encode(data));
     }
 
     @Override
-    public String readData() {
-        String data = wrappee.readData();
-        return new String(Base64.getDecoder().decode(data));
+    public ByteBuffer read() throws IOException {
+        return Base64.getDecoder().decode(wrappee.read());
+    }
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return Base64.getDecoder().wrap(wrappee.openReader());
+    }
+
+    @Override
+    public OutputStream openWriter() throws IOException {
+        // Closing the encoder flushes the final padding and closes the wrapped stream
+        return Base64.getEncoder().wrap(wrappee.openWriter());
+    }
+
+    /**
+     * Every 3 plain bytes encode to 4 characters, so only the groups covering
+     * the range are read from the wrapped source and decoded.
+     */
+    @Override
+    public byte[] readRange(long offset, int length) throws IOException {
+        DataSource.checkRange(offset, length);
+        long firstGroup = offset / 3;
+        long endGroup = (offset + length + 2) / 3;
+        long encodedLength = (endGroup - firstGroup) * 4;
+        if (length == 0 || encodedLength > Integer.MAX_VALUE) {
+            return length == 0 ? new byte[0] : DataSource.super.readRange(offset, length);
+        }
+        byte[] decoded = Base64.getDecoder().decode(wrappee.readRange(firstGroup * 4, (int) encodedLength));
+        int from = (int) (offset - firstGroup * 3);
+        if (from >= decoded.length) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(decoded, from, Math.min(decoded.length, from + length));
+    }
+
+    @Override
+    public long size() throws IOException {
+        long encodedSize = wrappee.size();
+        if (encodedSize == 0) {
+            return 0;
+        }
+        byte[] tail = wrappee.readRange(encodedSize - 2, 2);
+        int padding = (tail[0] == '=' ? 1 : 0) + (tail[1] == '=' ? 1 : 0);
+        return encodedSize / 4 * 3 - padding;
     }
 }
@@ -1,8 +1,14 @@
 package com.headfirst.chapter3.decoratorPattern.fileencryption;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * Concrete component for reading and writing raw data to a file.
@@ -15,20 +21,60 @@ public class FileDataSource implements DataSource {
     }
 
     @Override
-    public void writeData(String data) {
-        try {
-            Files.write(Paths.get(filename), data.getBytes(), StandardOpenOption.CREATE);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to write data", e);
+    public void write(ByteBuffer data) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
         }
     }
 
     @Override
-    public String readData() {
-        try {
-            return new String(Files.readAllBytes(Paths.get(filename)));
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to read data", e);
+    public ByteBuffer read() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large for a single buffer, use openReader(): " + filename);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Keep reading until the buffer is full
+            }
+            return buffer.flip();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return Files.newInputStream(Paths.get(filename));
+    }
+
+    @Override
+    public OutputStream openWriter() throws IOException {
+        // Defaults to CREATE, TRUNCATE_EXISTING and WRITE
+        return Files.newOutputStream(Paths.get(filename));
+    }
+
+    @Override
+    public byte[] readRange(long offset, int length) throws IOException {
+        DataSource.checkRange(offset, length);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long available = Math.max(0, channel.size() - offset);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, available));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) == -1) {
+                    break;
+                }
+            }
+            return buffer.position() == buffer.capacity()
+                    ? buffer.array()
+                    : Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return Files.size(Paths.get(filename));
+    }
+}
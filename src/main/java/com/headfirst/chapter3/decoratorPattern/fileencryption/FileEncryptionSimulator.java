@@ -1,7 +1,12 @@
 package com.headfirst.chapter3.decoratorPattern.fileencryption;
 
+import javax.crypto.KeyGenerator;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 public class FileEncryptionSimulator {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         DataSource fileDataSource = new FileDataSource("src/main/java/com/headfirst/chapter3/decoratorPattern/fileencryption/data.txt");
 
         // Correct order: Apply compression first, then encryption
@@ -14,5 +19,37 @@ public class FileEncryptionSimulator {
         // Reading data
         String result = encryptedCompressedDataSource.readData();
         System.out.println("Decrypted and decompressed: " + result);
+
+        // Streaming: each chunk passes through the whole stack, nothing is held in memory
+        try (OutputStream out = encryptedCompressedDataSource.openWriter()) {
+            for (int i = 0; i < 1000; i++) {
+                out.write(("Streamed line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = encryptedCompressedDataSource.openReader()) {
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                total += n;
+            }
+        }
+        System.out.println("Streamed back " + total + " bytes");
+
+        // Real encryption: AES-GCM over compressed data
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        DataSource aesDataSource = new AesGcmEncryptionDecorator(compressedDataSource, keyGenerator.generateKey());
+        aesDataSource.writeData("Really sensitive data here");
+        System.out.println("AES-GCM decrypted: " + aesDataSource.readData());
+
+        // Caching: repeated reads skip the file, inflate and decode
+        DataSourceCache cache = new DataSourceCache(16 * 1024 * 1024);
+        DataSource cachedDataSource = new CachingDataSource(encryptedCompressedDataSource,
+                "src/main/java/com/headfirst/chapter3/decoratorPattern/fileencryption/data.txt", cache);
+        cachedDataSource.writeData("Hot config blob");
+        for (int i = 0; i < 1000; i++) {
+            cachedDataSource.readData();
+        }
+        System.out.println("Cache hits: " + cache.getHitCount() + ", misses: " + cache.getMissCount());
     }
 }
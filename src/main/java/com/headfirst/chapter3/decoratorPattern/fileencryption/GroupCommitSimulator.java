@@ -0,0 +1,55 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Many writer threads appending to one AsyncFileDataSource share each fsync.
+ *
+ * Usage: GroupCommitSimulator [writerThreads] [writesPerThread]
+ */
+public class GroupCommitSimulator {
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int writesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        Path file = Files.createTempFile("group-commit", ".log");
+
+        try (AsyncFileDataSource log = new AsyncFileDataSource(file.toString(),
+                AsyncFileDataSource.DEFAULT_MAX_BATCH_BYTES, Duration.ofMillis(1), true)) {
+            long start = System.nanoTime();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < writers; t++) {
+                int writer = t;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < writesPerThread; i++) {
+                        byte[] line = ("writer " + writer + " event " + i + "\n").getBytes(StandardCharsets.UTF_8);
+                        // Each writer waits for durability before its next event, like a request handler would
+                        log.appendAsync(ByteBuffer.wrap(line)).join();
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            CompletableFuture<Long> marker = log.appendAsync(ByteBuffer.wrap("done\n".getBytes(StandardCharsets.UTF_8)));
+            System.out.println("Last offset: " + marker.join());
+            System.out.printf("%d durable writes in %.2f s (%.0f writes/s)%n", log.getWriteCount(), seconds,
+                    log.getWriteCount() / seconds);
+            System.out.printf("%d batches, %d fsyncs, %.1f writes per fsync%n", log.getBatchCount(),
+                    log.getSyncCount(), (double) log.getWriteCount() / log.getSyncCount());
+            System.out.println("File size: " + log.size() + " bytes");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
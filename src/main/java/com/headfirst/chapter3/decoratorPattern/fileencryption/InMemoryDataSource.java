@@ -0,0 +1,56 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Concrete component that keeps the data in a byte array. Useful for tests and
+ * benchmarks where the disk should not be part of the measurement.
+ */
+public class InMemoryDataSource implements DataSource {
+    private volatile byte[] data = new byte[0];
+
+    @Override
+    public void write(ByteBuffer data) {
+        byte[] copy = new byte[data.remaining()];
+        data.get(copy);
+        this.data = copy;
+    }
+
+    @Override
+    public ByteBuffer read() {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    @Override
+    public InputStream openReader() {
+        return new ByteArrayInputStream(data);
+    }
+
+    @Override
+    public OutputStream openWriter() {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                data = toByteArray();
+            }
+        };
+    }
+
+    @Override
+    public byte[] readRange(long offset, int length) {
+        DataSource.checkRange(offset, length);
+        byte[] snapshot = data;
+        int from = (int) Math.min(offset, snapshot.length);
+        return Arrays.copyOfRange(snapshot, from, (int) Math.min(snapshot.length, from + (long) length));
+    }
+
+    @Override
+    public long size() {
+        return data.length;
+    }
+}
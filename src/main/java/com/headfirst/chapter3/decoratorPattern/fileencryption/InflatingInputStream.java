@@ -0,0 +1,114 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a zlib stream with a pooled Inflater, refilling its input
+ * buffer from the wrapped stream as often as needed. When the wrapped stream
+ * is buffer-backed (e.g. a memory-mapped file) the Inflater reads the buffers
+ * directly instead of copying them.
+ */
+class InflatingInputStream extends FilterInputStream {
+    private final Inflater inflater;
+    private final byte[] buffer;
+    private boolean closed;
+
+    InflatingInputStream(InputStream in) {
+        super(in);
+        this.inflater = CodecPool.borrowInflater();
+        this.buffer = CodecPool.borrowBuffer();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            while (true) {
+                int length = inflater.inflate(b, off, len);
+                if (length > 0) {
+                    return length;
+                }
+                if (inflater.finished()) {
+                    return -1;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new IOException("Preset dictionaries are not supported");
+                }
+                fill();
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed data", e);
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] scratch = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int length = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+            if (length == -1) {
+                break;
+            }
+            skipped += length;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return closed || inflater.finished() ? 0 : 1;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            in.close();
+        } finally {
+            CodecPool.release(inflater);
+            CodecPool.release(buffer);
+        }
+    }
+
+    private void fill() throws IOException {
+        if (in instanceof ByteBufferInputStream) {
+            ByteBuffer next = ((ByteBufferInputStream) in).nextBuffer();
+            if (next == null) {
+                throw new EOFException("Unexpected end of compressed data");
+            }
+            inflater.setInput(next);
+            return;
+        }
+        int length = in.read(buffer, 0, buffer.length);
+        if (length == -1) {
+            throw new EOFException("Unexpected end of compressed data");
+        }
+        inflater.setInput(buffer, 0, length);
+    }
+}
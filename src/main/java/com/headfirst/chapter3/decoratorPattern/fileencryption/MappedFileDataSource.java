@@ -0,0 +1,143 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Concrete component that serves reads from memory-mapped segments of a file, so
+ * reads come straight from the page cache instead of being copied onto the heap.
+ * The file is mapped in segments, which lets files larger than 2 GB be read.
+ *
+ * Meant for read-mostly files: a write replaces the file and the mapping is
+ * refreshed on the next read. Readers still using an old mapping while the file
+ * is truncated by another writer may fail.
+ */
+public class MappedFileDataSource implements DataSource {
+    static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    private final Path path;
+    private final long segmentSize;
+    private volatile Mapping mapping;
+
+    public MappedFileDataSource(String filename) {
+        this(filename, DEFAULT_SEGMENT_SIZE);
+    }
+
+    MappedFileDataSource(String filename, long segmentSize) {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.path = Paths.get(filename);
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns the mapping itself when the file fits in one segment, so the
+     * decorators above read straight from the page cache.
+     */
+    @Override
+    public ByteBuffer read() throws IOException {
+        ByteBuffer[] segments = segments();
+        if (segments.length == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        return DataSource.super.read();
+    }
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return new ByteBufferInputStream(segments());
+    }
+
+    @Override
+    public OutputStream openWriter() throws IOException {
+        mapping = null;
+        return Files.newOutputStream(path);
+    }
+
+    @Override
+    public byte[] readRange(long offset, int length) throws IOException {
+        DataSource.checkRange(offset, length);
+        Mapping current = currentMapping();
+        long end = Math.min(current.size, offset + length);
+        byte[] result = new byte[(int) Math.max(0, end - offset)];
+        int position = 0;
+        while (position < result.length) {
+            long fileOffset = offset + position;
+            ByteBuffer segment = current.segments[(int) (fileOffset / segmentSize)].duplicate();
+            segment.position((int) (fileOffset % segmentSize));
+            int count = Math.min(segment.remaining(), result.length - position);
+            segment.get(result, position, count);
+            position += count;
+        }
+        return result;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return currentMapping().size;
+    }
+
+    /**
+     * Read-only views of the mapped segments, in file order. Each call returns
+     * fresh views, so callers may move their positions freely.
+     */
+    public ByteBuffer[] segments() throws IOException {
+        MappedByteBuffer[] segments = currentMapping().segments;
+        ByteBuffer[] views = new ByteBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            views[i] = segments[i].asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    private Mapping currentMapping() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Mapping current = mapping;
+        if (current == null || current.size != attributes.size()
+                || !current.lastModified.equals(attributes.lastModifiedTime())) {
+            current = map(attributes);
+            mapping = current;
+        }
+        return current;
+    }
+
+    private Mapping map(BasicFileAttributes attributes) throws IOException {
+        long size = attributes.size();
+        int count = (int) ((size + segmentSize - 1) / segmentSize);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int i = 0; i < count; i++) {
+                long position = i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+        }
+        return new Mapping(size, attributes.lastModifiedTime(), segments);
+    }
+
+    private static final class Mapping {
+        final long size;
+        final FileTime lastModified;
+        final MappedByteBuffer[] segments;
+
+        Mapping(long size, FileTime lastModified, MappedByteBuffer[] segments) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.segments = segments;
+        }
+    }
+}
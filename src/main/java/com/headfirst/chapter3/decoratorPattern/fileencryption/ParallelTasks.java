@@ -0,0 +1,30 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Helpers for the decorators that process blocks on a ForkJoinPool.
+ */
+final class ParallelTasks {
+    private ParallelTasks() {
+    }
+
+    /**
+     * Waits for a block task, unwrapping its failure into an IOException.
+     */
+    static <T> T await(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for block", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Block processing failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.headfirst.chapter3.decoratorPattern.fileencryption;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Concrete component storing data as an append-only log of records instead of
+ * rewriting a whole file. Records are numbered from 0; {@link #append} returns
+ * the record's offset and {@link #read(long)} finds it through a sparse in-memory
+ * index, scanning at most {@code indexIntervalBytes} of the segment.
+ *
+ * The log rolls to a new segment file once the active one reaches
+ * {@code segmentBytes}. Old segments are deleted once the log exceeds
+ * {@code retentionBytes} or a segment is older than {@code retentionAge}.
+ * Compression and encryption are applied per record: every record is written
+ * through the decorators returned by {@code recordDecorators}.
+ *
+ * Record format: [payload length][CRC32 of payload][payload]. A torn record at
+ * the end of the last segment is truncated when the log is opened.
+ */
+public class SegmentedLogDataSource implements DataSource, AutoCloseable {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_INDEX_INTERVAL_BYTES = 4096;
+    static final int RECORD_HEADER_LENGTH = 8;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int indexIntervalBytes;
+    private final long retentionBytes;
+    private final Duration retentionAge;
+    private final UnaryOperator<DataSource> recordDecorators;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long nextOffset;
+
+    public SegmentedLogDataSource(String directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_INDEX_INTERVAL_BYTES, Long.MAX_VALUE, null, UnaryOperator.identity());
+    }
+
+    /**
+     * @param directory          directory holding the segment files
+     * @param segmentBytes       size after which a new segment is started
+     * @param indexIntervalBytes bytes between two sparse index entries
+     * @param retentionBytes     total log size above which the oldest segments are deleted
+     * @param retentionAge       age after which closed segments are deleted, or null to keep them
+     * @param recordDecorators   wraps a per-record source, e.g. {@code s -> new EncryptionDecorator(new CompressionDecorator(s))}
+     */
+    public SegmentedLogDataSource(String directory, long segmentBytes, int indexIntervalBytes, long retentionBytes,
+                                  Duration retentionAge, UnaryOperator<DataSource> recordDecorators) {
+        if (segmentBytes <= RECORD_HEADER_LENGTH || indexIntervalBytes <= 0 || retentionBytes <= 0) {
+            throw new IllegalArgumentException("Segment, index interval and retention sizes must be positive");
+        }
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.retentionBytes = retentionBytes;
+        this.retentionAge = retentionAge;
+        this.recordDecorators = recordDecorators;
+        try {
+            Files.createDirectories(this.directory);
+            recover();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open log in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends the remaining bytes of {@code data} as one record.
+     *
+     * @return the offset of the new record
+     */
+    public long append(ByteBuffer data) throws IOException {
+        ByteBuffer payload = encode(data);
+        lock.writeLock().lock();
+        try {
+            Segment active = segments.lastEntry().getValue();
+            if (active.size > 0 && active.size + RECORD_HEADER_LENGTH + payload.remaining() > segmentBytes) {
+                active = roll();
+            }
+            long offset = nextOffset;
+            active.append(offset, payload);
+            nextOffset++; // Only once the record is written, so a failed append does not use up an offset
+            return offset;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long append(byte[] data) throws IOException {
+        return append(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Reads the record stored at {@code offset}.
+     *
+     * @throws IllegalArgumentException if the offset was never written or has been deleted by retention
+     */
+    public ByteBuffer read(long offset) throws IOException {
+        ByteBuffer payload;
+        lock.readLock().lock();
+        try {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null || offset >= nextOffset) {
+                throw new IllegalArgumentException("Offset out of range: " + offset
+                        + " (log holds " + firstOffset() + " to " + (nextOffset - 1) + ")");
+            }
+            payload = entry.getValue().read(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(payload);
+    }
+
+    /**
+     * Offset of the oldest record still retained.
+     */
+    public long firstOffset() {
+        lock.readLock().lock();
+        try {
+            return segments.firstKey();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Offset the next appended record will get.
+     */
+    public long nextOffset() {
+        lock.readLock().lock();
+        try {
+            return nextOffset;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes closed segments that fall outside the size or age retention.
+     * Called on every roll; call it periodically for age-based retention of idle logs.
+     */
+    public void applyRetention() throws IOException {
+        lock.writeLock().lock();
+        try {
+            long total = 0;
+            for (Segment segment : segments.values()) {
+                total += segment.size;
+            }
+            long now = System.currentTimeMillis();
+            while (segments.size() > 1) {
+                Segment oldest = segments.firstEntry().getValue();
+                boolean tooBig = total > retentionBytes;
+                boolean tooOld = retentionAge != null
+                        && now - Files.getLastModifiedTime(oldest.path).toMillis() > retentionAge.toMillis();
+                if (!tooBig && !tooOld) {
+                    break;
+                }
+                segments.pollFirstEntry();
+                total -= oldest.size;
+                oldest.delete();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the active segment to disk.
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            segments.lastEntry().getValue().channel.force(false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a record; the log never overwrites.
+     */
+    @Override
+    public void write(ByteBuffer data) throws IOException {
+        append(data);
+    }
+
+    /**
+     * Returns the latest record, or an empty buffer if the log is empty.
+     */
+    @Override
+    public ByteBuffer read() throws IOException {
+        long last = nextOffset() - 1;
+        return last < firstOffset() ? ByteBuffer.allocate(0) : read(last);
+    }
+
+    @Override
+    public InputStream openReader() throws IOException {
+        return new ByteBufferInputStream(read());
+    }
+
+    /**
+     * Buffers the written bytes and appends them as one record on close.
+     */
+    @Override
+    public OutputStream openWriter() {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() throws IOException {
+                append(ByteBuffer.wrap(buf, 0, count));
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ByteBuffer encode(ByteBuffer data) throws IOException {
+        InMemoryDataSource record = new InMemoryDataSource();
+        recordDecorators.apply(record).write(data);
+        return record.read();
+    }
+
+    private ByteBuffer decode(ByteBuffer payload) throws IOException {
+        InMemoryDataSource record = new InMemoryDataSource();
+        record.write(payload);
+        return recordDecorators.apply(record).read();
+    }
+
+    private Segment roll() throws IOException {
+        segments.lastEntry().getValue().channel.force(false);
+        Segment segment = new Segment(nextOffset, true);
+        segments.put(nextOffset, segment);
+        applyRetention();
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .map(file -> file.getFileName().toString())
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())))
+                    .forEach(baseOffset -> segments.put(baseOffset, null));
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, new Segment(0, true));
+            return;
+        }
+        for (Map.Entry<Long, Segment> entry : segments.entrySet()) {
+            Segment segment = new Segment(entry.getKey(), false);
+            segment.scan(entry.getKey().equals(segments.lastKey()));
+            entry.setValue(segment);
+            nextOffset = segment.baseOffset + segment.recordCount;
+        }
+    }
+
+    /**
+     * One segment file plus its sparse index of (relative offset, file position) pairs.
+     */
+    private final class Segment {
+        final long baseOffset;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        int recordCount;
+        int[] indexedOffsets = new int[16];
+        long[] indexedPositions = new long[16];
+        int indexEntries;
+        long lastIndexedPosition = -indexIntervalBytes;
+
+        Segment(long baseOffset, boolean create) throws IOException {
+            this.baseOffset = baseOffset;
+            this.path = directory.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+            this.channel = create
+                    ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        void append(long offset, ByteBuffer payload) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH)
+                    .putInt(payload.remaining()).putInt(crc(payload.duplicate())).flip();
+            long position = size;
+            ByteBuffer[] record = {header, payload};
+            long length = header.remaining() + payload.remaining();
+            long written = 0;
+            try {
+                while (written < length) {
+                    channel.position(position + written);
+                    written += channel.write(record);
+                }
+            } catch (IOException e) {
+                // Cut off the partly written record, or the next one would be stored behind it
+                try {
+                    channel.truncate(position);
+                } catch (IOException truncateFailure) {
+                    e.addSuppressed(truncateFailure);
+                }
+                throw e;
+            }
+            index((int) (offset - baseOffset), position);
+            size += length;
+            recordCount++;
+        }
+
+        ByteBuffer read(long offset) throws IOException {
+            int relative = (int) (offset - baseOffset);
+            int entry = Arrays.binarySearch(indexedOffsets, 0, indexEntries, relative);
+            if (entry < 0) {
+                entry = -entry - 2;
+            }
+            int current = indexedOffsets[entry];
+            long position = indexedPositions[entry];
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+            while (true) {
+                readFully(header.clear(), position);
+                int length = header.getInt(0);
+                if (current == relative) {
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    readFully(payload, position + RECORD_HEADER_LENGTH);
+                    if (crc(payload.flip().duplicate()) != header.getInt(4)) {
+                        throw new IOException("Record " + offset + " is corrupt");
+                    }
+                    return payload;
+                }
+                position += RECORD_HEADER_LENGTH + length;
+                current++;
+            }
+        }
+
+        /**
+         * Rebuilds the index; a torn record at the end of the last segment is cut off.
+         */
+        void scan(boolean last) throws IOException {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+            long position = 0;
+            while (position + RECORD_HEADER_LENGTH <= fileSize) {
+                readFully(header.clear(), position);
+                int length = header.getInt(0);
+                long end = position + RECORD_HEADER_LENGTH + length;
+                if (length < 0 || end > fileSize) {
+                    break;
+                }
+                if (last) {
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    readFully(payload, position + RECORD_HEADER_LENGTH);
+                    if (crc(payload.flip()) != header.getInt(4)) {
+                        break;
+                    }
+                }
+                index(recordCount++, position);
+                position = end;
+            }
+            if (position != fileSize) {
+                if (!last) {
+                    throw new IOException("Segment " + path + " is corrupt at position " + position);
+                }
+                channel.truncate(position);
+            }
+            size = position;
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+
+        private void index(int relativeOffset, long position) {
+            if (position - lastIndexedPosition < indexIntervalBytes) {
+                return;
+            }
+            if (indexEntries == indexedOffsets.length) {
+                indexedOffsets = Arrays.copyOf(indexedOffsets, indexEntries * 2);
+                indexedPositions = Arrays.copyOf(indexedPositions, indexEntries * 2);
+            }
+            indexedOffsets[indexEntries] = relativeOffset;
+            indexedPositions[indexEntries] = position;
+            indexEntries++;
+            lastIndexedPosition = position;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1) {
+                    throw new IOException("Unexpected end of segment " + path);
+                }
+            }
+        }
+    }
+
+    private static int crc(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}